@@ -0,0 +1,111 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Closed-loop load generator for GET /api/cars/{id}/insurance-valid.
+// Run with: java LoadTest.java <baseUrl> <concurrency> <seconds> <firstCarId> <lastCarId>
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:18080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        long firstCarId = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        long lastCarId = args.length > 4 ? Long.parseLong(args[4]) : 2;
+        int warmUpSeconds = Math.max(1, seconds / 5);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long warmUpEnd = System.nanoTime() + Duration.ofSeconds(warmUpSeconds).toNanos();
+        long end = warmUpEnd + Duration.ofSeconds(seconds).toNanos();
+
+        List<Future<Recorder>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> run(client, baseUrl, firstCarId, lastCarId, warmUpEnd, end)));
+            }
+        }
+
+        Recorder total = new Recorder();
+        for (Future<Recorder> worker : workers) {
+            total.addAll(worker.get());
+        }
+        long[] latencies = total.sorted();
+        System.out.printf("requests=%d errors=%d throughput=%.0f req/s p50=%.2f ms p99=%.2f ms p99.9=%.2f ms%n",
+                latencies.length, total.errors, latencies.length / (double) seconds,
+                percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 99.9));
+    }
+
+    private static Recorder run(HttpClient client, String baseUrl, long firstCarId, long lastCarId,
+                                long warmUpEnd, long end) {
+        Recorder recorder = new Recorder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            long carId = random.nextLong(firstCarId, lastCarId + 1);
+            String date = (2024 + random.nextInt(2)) + "-0" + (1 + random.nextInt(9)) + "-15";
+            HttpRequest request = HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/api/cars/" + carId + "/insurance-valid?date=" + date))
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            boolean ok;
+            try {
+                ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (Exception e) {
+                ok = false;
+            }
+            if (now >= warmUpEnd) {
+                recorder.record(System.nanoTime() - now, ok);
+            }
+        }
+        return recorder;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return Double.NaN;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        void record(long latencyNanos, boolean ok) {
+            if (!ok) {
+                errors++;
+                return;
+            }
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+        }
+
+        void addAll(Recorder other) {
+            for (int i = 0; i < other.size; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(latencies, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
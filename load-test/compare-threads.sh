@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+# Runs LoadTest against the app on platform threads and then on virtual threads.
+# Usage: load-test/compare-threads.sh [concurrency] [seconds] [cars] [extra app args...]
+# e.g.   load-test/compare-threads.sh 400 30 10000 --carins.policy-index.enabled=false   (JDBC-bound path)
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+CONCURRENCY="${1:-200}"
+SECONDS_PER_RUN="${2:-30}"
+CARS="${3:-10000}"
+shift $(( $# > 3 ? 3 : $# ))
+BASE_URL="http://localhost:18080"
+STARTUP_TIMEOUT=120
+FIRST_CAR=1000
+LAST_CAR=$(( FIRST_CAR + CARS - 1 ))
+
+mvn -B -q -DskipTests package
+JAR=$(ls target/car-insurance-*.jar | grep -v original | head -1)
+
+# Seeds the cars after the app's migrations (a Flyway afterMigrate callback), the way the benchmarks'
+# SyntheticDataGenerator does: one policy a car, starting on a different day of 2024 for each, so checks
+# spread over many cars and both answers instead of the two sample cars the index always holds.
+DATA_DIR=target/load-test-data
+mkdir -p "$DATA_DIR"
+cat > "$DATA_DIR/afterMigrate.sql" <<SQL
+insert into owner (id, name, email)
+select x, 'Owner ' || x, 'owner' || x || '@example.com' from system_range($FIRST_CAR, $LAST_CAR);
+insert into car (id, vin, make, model, year_of_manufacture, owner_id)
+select x, 'LOAD' || x, 'Make' || mod(x, 20), 'Model' || mod(x, 50), 2005 + mod(x, 20), x
+from system_range($FIRST_CAR, $LAST_CAR);
+insert into insurancepolicy (id, car_id, provider, start_date, end_date)
+select x, x, casewhen(mod(x, 2) = 0, 'Allianz', 'Groupama'),
+       dateadd('DAY', mod(x * 7, 366), date '2024-01-01'), dateadd('DAY', mod(x * 7, 366) + 364, date '2024-01-01')
+from system_range($FIRST_CAR, $LAST_CAR);
+SQL
+
+run() {
+  local mode="$1" profile="$2"
+  shift 2
+  java -jar "$JAR" --spring.profiles.active="$profile" \
+    --spring.flyway.locations="classpath:db/migration,filesystem:$DATA_DIR" "$@" \
+    > "target/load-test-$mode.log" 2>&1 &
+  local pid=$!
+  trap 'kill $pid 2>/dev/null' EXIT
+  local waited=0
+  until curl -sf "$BASE_URL/actuator/health" > /dev/null; do
+    if ! kill -0 "$pid" 2>/dev/null || (( waited >= STARTUP_TIMEOUT )); then
+      echo "$mode: app exited or was not up within ${STARTUP_TIMEOUT}s, see target/load-test-$mode.log" >&2
+      exit 1
+    fi
+    sleep 1
+    waited=$(( waited + 1 ))
+  done
+  echo -n "$mode: "
+  java load-test/LoadTest.java "$BASE_URL" "$CONCURRENCY" "$SECONDS_PER_RUN" "$FIRST_CAR" "$LAST_CAR"
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  trap - EXIT
+}
+
+run platform default "$@"
+run virtual virtual-threads "$@"
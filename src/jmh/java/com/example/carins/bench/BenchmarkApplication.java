@@ -0,0 +1,23 @@
+package com.example.carins.bench;
+
+import com.example.carins.CarInsuranceApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    // the full application without the web server; benchmarks call beans directly. Properties are passed as
+    // command line arguments: builder properties are only defaults, which application.properties overrides
+    public static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(CarInsuranceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN", "logging.level.com.example.carins.bench=INFO")
+                .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+    }
+}
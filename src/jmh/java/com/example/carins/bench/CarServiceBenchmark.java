@@ -0,0 +1,87 @@
+package com.example.carins.bench;
+
+import com.example.carins.model.InsuranceClaim;
+import com.example.carins.service.CarService;
+import com.example.carins.web.dto.CarDto;
+import com.example.carins.web.dto.CarHistoryEventDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CarServiceBenchmark {
+
+    private static final int INPUTS = 4096;
+    private static final BigDecimal AMOUNT = new BigDecimal("250.00");
+
+    @Param({"100000"})
+    public long cars;
+
+    @Param({"3"})
+    public int policiesPerCar;
+
+    @Param({"5"})
+    public int claimsPerCar;
+
+    private ConfigurableApplicationContext context;
+    private CarService service;
+
+    private final long[] carIds = new long[INPUTS];
+    private final LocalDate[] dates = new LocalDate[INPUTS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        SyntheticDataGenerator.generate(context, cars, policiesPerCar, claimsPerCar);
+        service = context.getBean(CarService.class);
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < INPUTS; i++) {
+            carIds[i] = SyntheticDataGenerator.FIRST_ID + random.nextLong(cars);
+            dates[i] = SyntheticDataGenerator.POLICY_EPOCH.plusDays(random.nextInt(365 * (policiesPerCar + 1)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean isInsuranceValid() {
+        int i = nextInput();
+        return service.isInsuranceValid(carIds[i], dates[i]);
+    }
+
+    @Benchmark
+    public InsuranceClaim registerClaim() {
+        int i = nextInput();
+        LocalDate covered = SyntheticDataGenerator.POLICY_EPOCH.plusDays(i % (365 * policiesPerCar));
+        return service.registerClaim(carIds[i], covered, "Benchmark claim for a scratched door", AMOUNT);
+    }
+
+    @Benchmark
+    public List<CarHistoryEventDto> getCarHistory() {
+        return service.getCarHistory(carIds[nextInput()]);
+    }
+
+    @Benchmark
+    public List<CarDto> listCarsPage() {
+        return service.listCarsAfter(carIds[nextInput()], 100);
+    }
+
+    private int nextInput() {
+        return next++ & (INPUTS - 1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.carins.bench;
+
+import com.example.carins.web.utilities.DateValidator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+// run with -prof gc to see gc.alloc.rate.norm (bytes allocated per call) next to the timings;
+// the legacy* benchmarks keep the previous LocalDate.parse implementation as the baseline
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateValidatorBenchmark {
+
+    private static final LocalDate LEGACY_MIN_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate LEGACY_MAX_DATE = LocalDate.now().plusYears(50);
+
+    private final DateValidator validator = new DateValidator();
+
+    public String valid = "2025-06-15";
+    public String badFormat = "2025/06/15";
+    public String outOfRange = "1800-01-01";
+
+    @Benchmark
+    public int validEpochDay() {
+        return validator.parseEpochDay(valid);
+    }
+
+    @Benchmark
+    public int invalidFormatEpochDay() {
+        return validator.parseEpochDay(badFormat);
+    }
+
+    @Benchmark
+    public LocalDate validDate() {
+        return validator.validateAndParse(valid);
+    }
+
+    @Benchmark
+    public Object invalidFormat() {
+        try {
+            return validator.validateAndParse(badFormat);
+        } catch (ResponseStatusException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object outOfRange() {
+        try {
+            return validator.validateAndParse(outOfRange);
+        } catch (ResponseStatusException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public LocalDate legacyValidDate() {
+        return legacyValidateAndParse(valid);
+    }
+
+    @Benchmark
+    public Object legacyInvalidFormat() {
+        try {
+            return legacyValidateAndParse(badFormat);
+        } catch (ResponseStatusException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object legacyOutOfRange() {
+        try {
+            return legacyValidateAndParse(outOfRange);
+        } catch (ResponseStatusException e) {
+            return e;
+        }
+    }
+
+    private static LocalDate legacyValidateAndParse(String dateString) {
+        if (dateString == null || dateString.trim().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Date is required");
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(dateString);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid date format. Use YYYY-MM-DD");
+        }
+        if (date.isBefore(LEGACY_MIN_DATE) || date.isAfter(LEGACY_MAX_DATE)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Date must be between %s and %s", LEGACY_MIN_DATE, LEGACY_MAX_DATE));
+        }
+        return date;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.carins.bench;
+
+import com.example.carins.service.CarService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// CarService.isInsuranceValid answered by the policy interval index (policyIndex=true) and by the JPQL path it
+// replaces (existsById, then the existsActiveOnDate count). The query cache is off and the inputs are 64k random
+// car and date pairs, so the JPQL path reaches the database on every call instead of replaying cached results.
+// Reference run, 100k cars, 3 policies each, on a single shared CPU (compare the ratio, not the absolute numbers):
+//   policyIndex=true    0.24 +- 0.06 us/op
+//   policyIndex=false   46 +- 44 us/op
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class InsuranceValidityBenchmark {
+
+    private static final int INPUTS = 1 << 16;
+
+    @Param({"true", "false"})
+    public boolean policyIndex;
+
+    @Param({"100000"})
+    public long cars;
+
+    @Param({"3"})
+    public int policiesPerCar;
+
+    private ConfigurableApplicationContext context;
+    private CarService service;
+
+    private final long[] carIds = new long[INPUTS];
+    private final LocalDate[] dates = new LocalDate[INPUTS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                "carins.policy-index.enabled=" + policyIndex);
+        SyntheticDataGenerator.generate(context, cars, policiesPerCar, 0);
+        service = context.getBean(CarService.class);
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < INPUTS; i++) {
+            carIds[i] = SyntheticDataGenerator.FIRST_ID + random.nextLong(cars);
+            dates[i] = SyntheticDataGenerator.POLICY_EPOCH.plusDays(random.nextInt(365 * (policiesPerCar + 1)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean isInsuranceValid() {
+        int i = nextInput();
+        return service.isInsuranceValid(carIds[i], dates[i]);
+    }
+
+    private int nextInput() {
+        return next++ & (INPUTS - 1);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.carins.bench;
+
+import com.example.carins.web.dto.CarDto;
+import com.example.carins.web.dto.CarHistoryEventDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"100"})
+    public int size;
+
+    private ObjectWriter writer;
+    private List<CarDto> cars;
+    private List<CarHistoryEventDto> history;
+
+    @Setup
+    public void setUp() {
+        // configured like the application's mapper (Spring Boot disables timestamp dates)
+        writer = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writer();
+
+        cars = new ArrayList<>(size);
+        history = new ArrayList<>(size);
+        LocalDate date = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < size; i++) {
+            cars.add(new CarDto((long) i, "VIN" + (100000 + i), "Dacia", "Logan", 2018, (long) i / 10,
+                    "Owner " + i / 10, "owner" + i / 10 + "@example.com"));
+            history.add(i % 3 == 0
+                    ? new CarHistoryEventDto("INSURANCE_POLICY_START", date.plusDays(i),
+                    "Insurance policy started with Allianz (valid until " + date.plusDays(i + 365) + ")", null, "Allianz")
+                    : new CarHistoryEventDto("INSURANCE_CLAIM", date.plusDays(i),
+                    "Minor collision with another vehicle in parking lot", new BigDecimal("850.50"), "Allianz"));
+        }
+    }
+
+    @Benchmark
+    public byte[] carDtos() throws JsonProcessingException {
+        return writer.writeValueAsBytes(cars);
+    }
+
+    @Benchmark
+    public byte[] carHistoryEvents() throws JsonProcessingException {
+        return writer.writeValueAsBytes(history);
+    }
+}
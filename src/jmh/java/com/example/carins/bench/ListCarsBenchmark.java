@@ -0,0 +1,53 @@
+package com.example.carins.bench;
+
+import com.example.carins.model.Car;
+import com.example.carins.service.CarService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// full-fleet listing, measured per call: the entity-graph findAll path against the keyset-streamed path
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ListCarsBenchmark {
+
+    @Param({"100000"})
+    public long cars;
+
+    private ConfigurableApplicationContext context;
+    private CarService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        SyntheticDataGenerator.generate(context, cars, 1, 0);
+        service = context.getBean(CarService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Car> listCars() {
+        return service.listCars();
+    }
+
+    @Benchmark
+    public long listCarsKeyset() {
+        long lastId = 0;
+        long count = 0;
+        for (var page = service.listCarsAfter(lastId, 500); !page.isEmpty(); page = service.listCarsAfter(lastId, 500)) {
+            lastId = page.get(page.size() - 1).id();
+            count += page.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.carins.bench;
+
+import com.example.carins.service.PolicyAnalyticsService;
+import com.example.carins.web.dto.PolicyAnalyticsDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// One full analytics pass per invocation at each parallelism; compare the scores against parallelism=1 for the
+// scaling. Parallelism is capped at half the connection pool, so the pool is raised to match. Needs as many
+// cores as the largest value to mean anything:
+//   -Djmh.args="PolicyAnalyticsBenchmark -p parallelism=1,2,4,8 -p cars=1000000"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PolicyAnalyticsBenchmark {
+
+    @Param({"1", "2", "4"})
+    public int parallelism;
+
+    @Param({"200000"})
+    public long cars;
+
+    @Param({"3"})
+    public int policiesPerCar;
+
+    private ConfigurableApplicationContext context;
+    private PolicyAnalyticsService analyticsService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "carins.analytics.parallelism=" + parallelism,
+                "spring.datasource.hikari.maximum-pool-size=" + Math.max(16, parallelism * 2));
+        SyntheticDataGenerator.generate(context, cars, policiesPerCar, 0);
+        analyticsService = context.getBean(PolicyAnalyticsService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PolicyAnalyticsDto fullPass() {
+        return analyticsService.run();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.carins.bench;
+
+import com.example.carins.model.Car;
+import com.example.carins.model.InsurancePolicy;
+import com.example.carins.service.PolicyStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Policies held as loaded entities (a map from car id to the car's InsurancePolicy list, each with its own
+// provider string and LocalDates, as JDBC hands them out) against PolicyStore's primitive columns on and off
+// the heap. Setup prints the heap and direct memory the layout keeps live and how long a full collection takes
+// with it live; the benchmarks time a validity check and a car's policy list. No database: at 10M policies the
+// rows alone would not fit next to the layouts.
+//   -Djmh.args="PolicyStoreBenchmark -p policies=10000000"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g", "-XX:+UseG1GC", "-XX:MaxDirectMemorySize=1g"})
+public class PolicyStoreBenchmark {
+
+    private static final int INPUTS = 4096;
+    private static final String[] PROVIDERS = {"Allianz", "Groupama", "Generali", "Omniasig", "Asirom", "Uniqa"};
+    private static final int EPOCH_DAY = (int) SyntheticDataGenerator.POLICY_EPOCH.toEpochDay();
+
+    @Param({"entity", "heap", "offheap"})
+    public String layout;
+
+    @Param({"1000000"})
+    public int policies;
+
+    @Param({"5"})
+    public int policiesPerCar;
+
+    private Map<Long, List<InsurancePolicy>> entities;
+    private PolicyStore store;
+
+    private final long[] carIds = new long[INPUTS];
+    private final int[] days = new int[INPUTS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        long heapBefore = heapUsedAfterGc();
+        long directBefore = directUsed();
+        if (layout.equals("entity")) {
+            entities = loadEntities();
+        } else {
+            store = loadStore(layout.equals("offheap"));
+        }
+        long heap = heapUsedAfterGc() - heapBefore;
+        // buffers dropped while growing are only counted out once their cleaner has run
+        long direct = directUsed() - directBefore;
+
+        long started = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - started) / 1_000_000;
+        System.out.printf("%n%s layout, %d policies: heap %d MiB (%d B/policy), direct %d MiB, store %d MiB, "
+                        + "full GC %d ms%n", layout, policies, heap >> 20, heap / policies, direct >> 20,
+                store == null ? 0 : store.footprintBytes() >> 20, fullGcMillis);
+
+        SplittableRandom random = new SplittableRandom(42);
+        int cars = policies / policiesPerCar;
+        for (int i = 0; i < INPUTS; i++) {
+            carIds[i] = SyntheticDataGenerator.FIRST_ID + random.nextInt(cars);
+            days[i] = EPOCH_DAY + random.nextInt(365 * (policiesPerCar + 1));
+        }
+    }
+
+    @Benchmark
+    public boolean isActiveOn() {
+        int i = next++ & (INPUTS - 1);
+        if (store != null) {
+            return store.isActiveOn(carIds[i], days[i]);
+        }
+        LocalDate date = LocalDate.ofEpochDay(days[i]);
+        for (InsurancePolicy policy : entities.get(carIds[i])) {
+            if (!policy.getStartDate().isAfter(date) && !policy.getEndDate().isBefore(date)) return true;
+        }
+        return false;
+    }
+
+    @Benchmark
+    public int policiesOf() {
+        int i = next++ & (INPUTS - 1);
+        if (store != null) {
+            return store.policiesOf(carIds[i]).size();
+        }
+        List<PolicyStore.StoredPolicy> result = new ArrayList<>();
+        for (InsurancePolicy policy : entities.get(carIds[i])) {
+            result.add(new PolicyStore.StoredPolicy(policy.getId(), (int) policy.getStartDate().toEpochDay(),
+                    (int) policy.getEndDate().toEpochDay(), policy.getProvider()));
+        }
+        return result.size();
+    }
+
+    // consecutive yearly policies per car, rotating through the providers
+    private Map<Long, List<InsurancePolicy>> loadEntities() throws ReflectiveOperationException {
+        Field carId = Car.class.getDeclaredField("id");
+        Field policyId = InsurancePolicy.class.getDeclaredField("id");
+        carId.setAccessible(true);
+        policyId.setAccessible(true);
+        Map<Long, List<InsurancePolicy>> loaded = new HashMap<>();
+        long id = SyntheticDataGenerator.FIRST_ID;
+        Car car = null;
+        List<InsurancePolicy> list = null;
+        for (int row = 0; row < policies; row++) {
+            if (row % policiesPerCar == 0) {
+                car = new Car();
+                carId.set(car, SyntheticDataGenerator.FIRST_ID + row / policiesPerCar);
+                list = new ArrayList<>();
+                loaded.put(car.getId(), list);
+            }
+            int start = EPOCH_DAY + 365 * (row % policiesPerCar);
+            InsurancePolicy policy = new InsurancePolicy(car, new String(PROVIDERS[row % PROVIDERS.length]),
+                    LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(start + 364));
+            policyId.set(policy, id++);
+            list.add(policy);
+        }
+        return loaded;
+    }
+
+    private PolicyStore loadStore(boolean offHeap) {
+        PolicyStore loaded = new PolicyStore(offHeap);
+        long id = SyntheticDataGenerator.FIRST_ID;
+        for (int row = 0; row < policies; row++) {
+            long car = SyntheticDataGenerator.FIRST_ID + row / policiesPerCar;
+            int start = EPOCH_DAY + 365 * (row % policiesPerCar);
+            loaded.upsert(car, id++, start, start + 364, PROVIDERS[row % PROVIDERS.length]);
+        }
+        loaded.trimToSize();
+        return loaded;
+    }
+
+    private static long heapUsedAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directUsed() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.carins.bench;
+
+import com.example.carins.model.InsuranceClaim;
+import com.example.carins.model.InsurancePolicy;
+import com.example.carins.repo.InsuranceClaimRepository;
+import com.example.carins.repo.InsurancePolicyRepository;
+import com.example.carins.repo.PolicyProviderView;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Repository lookups with and without the V2 migration indexes. indexed=false drops them after loading,
+// which leaves the schema as Hibernate used to generate it (only H2's car_id foreign key indexes).
+// The query cache is off so every call reaches the database. 10M policies and 10M claims:
+//   -Djmh.args="QueryIndexBenchmark -p cars=2000000 -p policiesPerCar=5 -p claimsPerCar=5 -jvmArgsAppend -Xmx12g"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QueryIndexBenchmark {
+
+    private static final int INPUTS = 4096;
+    private static final String[] INDEXES = {
+            "ix_insurancepolicy_car_dates", "ix_insurancepolicy_end_date", "ix_insuranceclaim_car_date"};
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    @Param({"100000"})
+    public long cars;
+
+    @Param({"3"})
+    public int policiesPerCar;
+
+    @Param({"5"})
+    public int claimsPerCar;
+
+    private ConfigurableApplicationContext context;
+    private InsurancePolicyRepository policyRepository;
+    private InsuranceClaimRepository claimRepository;
+
+    private final long[] carIds = new long[INPUTS];
+    private final LocalDate[] dates = new LocalDate[INPUTS];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        SyntheticDataGenerator.generate(context, cars, policiesPerCar, claimsPerCar);
+        if (!indexed) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            for (String index : INDEXES) {
+                jdbc.execute("drop index " + index);
+            }
+        }
+        policyRepository = context.getBean(InsurancePolicyRepository.class);
+        claimRepository = context.getBean(InsuranceClaimRepository.class);
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < INPUTS; i++) {
+            carIds[i] = SyntheticDataGenerator.FIRST_ID + random.nextLong(cars);
+            dates[i] = SyntheticDataGenerator.POLICY_EPOCH.plusDays(random.nextInt(365 * (policiesPerCar + 1)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean existsActiveOnDate() {
+        int i = nextInput();
+        return policyRepository.existsActiveOnDate(carIds[i], dates[i]);
+    }
+
+    @Benchmark
+    public List<InsurancePolicy> findPoliciesByCar() {
+        return policyRepository.findByCarId(carIds[nextInput()]);
+    }
+
+    @Benchmark
+    public List<InsuranceClaim> findClaimsByCar() {
+        return claimRepository.findByCarIdOrderByClaimDateAsc(carIds[nextInput()]);
+    }
+
+    // one scheduler chunk: policies that ended on a given day
+    @Benchmark
+    public List<PolicyProviderView> findExpiredOnDay() {
+        LocalDate day = dates[nextInput()];
+        return policyRepository.findExpiredBetween(day.minusDays(1), day, day.minusDays(1), 0, Limit.of(500));
+    }
+
+    private int nextInput() {
+        return next++ & (INPUTS - 1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.carins.bench;
+
+import com.example.carins.service.PolicyIntervalIndex;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+// Bulk-loads H2 with set-based INSERT ... SELECT FROM SYSTEM_RANGE statements, which fill millions of rows in
+// seconds. Every car gets consecutive one-year policies starting at POLICY_EPOCH, so any date in
+// [POLICY_EPOCH, POLICY_EPOCH + policiesPerCar years) is covered, and claims fall inside those years.
+public final class SyntheticDataGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    public static final LocalDate POLICY_EPOCH = LocalDate.of(2020, 1, 1);
+    public static final long FIRST_ID = 1_000;
+    private static final int CARS_PER_OWNER = 10;
+
+    private SyntheticDataGenerator() {
+    }
+
+    public static void generate(ApplicationContext context, long cars, int policiesPerCar, int claimsPerCar) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        long started = System.nanoTime();
+
+        long firstCar = FIRST_ID;
+        long lastCar = FIRST_ID + cars - 1;
+        long owners = Math.max(1, cars / CARS_PER_OWNER);
+
+        // only generated numbers are inlined: H2 cannot type bind parameters inside these expressions
+        String epoch = "date '" + POLICY_EPOCH + "'";
+
+        jdbc.update("insert into owner (id, name, email) " +
+                "select x, 'Owner ' || x, 'owner' || x || '@example.com' " +
+                "from system_range(" + FIRST_ID + ", " + (FIRST_ID + owners - 1) + ")");
+
+        jdbc.update("insert into car (id, vin, make, model, year_of_manufacture, owner_id) " +
+                "select x, 'SYN' || x, 'Make' || mod(x, 20), 'Model' || mod(x, 50), 2005 + mod(x, 20), " +
+                FIRST_ID + " + mod(x, " + owners + ") " +
+                "from system_range(" + firstCar + ", " + lastCar + ")");
+
+        jdbc.update("insert into insurancepolicy (id, car_id, provider, start_date, end_date) " +
+                "select " + FIRST_ID + " + (c.x - " + firstCar + ") * " + policiesPerCar + " + p.x, c.x, " +
+                "casewhen(mod(c.x + p.x, 3) = 0, 'Allianz', casewhen(mod(c.x + p.x, 3) = 1, 'Groupama', 'Generali')), " +
+                "dateadd('YEAR', p.x, " + epoch + "), dateadd('DAY', -1, dateadd('YEAR', p.x + 1, " + epoch + ")) " +
+                "from system_range(" + firstCar + ", " + lastCar + ") c " +
+                "cross join system_range(0, " + (policiesPerCar - 1) + ") p");
+
+        if (claimsPerCar > 0) {
+            jdbc.update("insert into insuranceclaim (id, car_id, claim_date, description, amount) " +
+                    "select next value for insuranceclaim_seq, c.x, " +
+                    "dateadd('DAY', mod(c.x * 31 + q.x * 97, " + 365 * policiesPerCar + "), " + epoch + "), " +
+                    "'Synthetic claim number ' || q.x || ' for car ' || c.x, 100 + mod(c.x * 7 + q.x * 13, 5000) " +
+                    "from system_range(" + firstCar + ", " + lastCar + ") c " +
+                    "cross join system_range(1, " + claimsPerCar + ") q");
+        }
+
+        jdbc.execute("alter table owner alter column id restart with " + (FIRST_ID + owners));
+        jdbc.execute("alter table car alter column id restart with " + (lastCar + 1));
+        jdbc.execute("alter table insurancepolicy alter column id restart with " + (FIRST_ID + cars * policiesPerCar));
+
+        // raw SQL bypasses Hibernate and the entity listener, so drop cached state and rebuild the index
+        context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getCache().evictAllRegions();
+        context.getBean(PolicyIntervalIndex.class).warmUp();
+
+        logger.info("Generated {} cars, {} policies and {} claims in {} ms", cars, cars * policiesPerCar,
+                cars * claimsPerCar, (System.nanoTime() - started) / 1_000_000);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.carins.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+// Hibernate second-level and query cache regions, backed by Caffeine (W-TinyLFU eviction) through JCache
+@Configuration
+public class CacheConfig {
+
+    public static final String CAR_REGION = "car";
+    public static final String OWNER_REGION = "owner";
+    public static final String POLICY_REGION = "insurancepolicy";
+    static final String QUERY_REGION = "default-query-results-region";
+    static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(MeterRegistry meterRegistry,
+                                              @Value("${carins.cache.entity.maximum-size}") long entityMaximumSize,
+                                              @Value("${carins.cache.entity.ttl}") Duration entityTtl,
+                                              @Value("${carins.cache.query.maximum-size}") long queryMaximumSize,
+                                              @Value("${carins.cache.query.ttl}") Duration queryTtl) {
+        // a manager of its own rather than the JVM-wide default one: another context in the same JVM (a test
+        // context with other properties, a devtools restart) would find these regions already created
+        URI uri = URI.create("carins-hibernate-" + UUID.randomUUID());
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(uri, CacheConfig.class.getClassLoader());
+
+        for (String region : new String[]{CAR_REGION, OWNER_REGION, POLICY_REGION}) {
+            cacheManager.createCache(region, region(entityMaximumSize, entityTtl));
+        }
+        cacheManager.createCache(QUERY_REGION, region(queryMaximumSize, queryTtl));
+        // update timestamps must outlive every cached query result, so this region is never expired
+        cacheManager.createCache(TIMESTAMPS_REGION, region(queryMaximumSize, null));
+
+        for (String name : cacheManager.getCacheNames()) {
+            JCacheMetrics.monitor(meterRegistry, cacheManager.getCache(name));
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
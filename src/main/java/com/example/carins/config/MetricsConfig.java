@@ -0,0 +1,40 @@
+package com.example.carins.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Instrumentation that Spring Boot does not provide on its own. Endpoint latency (http.server.requests),
+// repository method timers (spring.data.repository.invocations) and the raw Hikari pool gauges
+// (hikaricp.connections.*) are auto-configured; their histograms are switched on in application.properties.
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCounter());
+    }
+
+    // share of each pool in use: 1.0 means every connection is checked out and new requests queue
+    // (hikaricp.connections.pending shows how many); one gauge per pool when a replica is configured
+    @Bean
+    public MeterBinder connectionPoolSaturation(ObjectProvider<HikariDataSource> pools) {
+        return registry -> pools.orderedStream().forEach(hikari ->
+                Gauge.builder("carins.db.pool.saturation", hikari, MetricsConfig::saturation)
+                        .description("Active connections divided by the maximum pool size")
+                        .tag("pool", hikari.getPoolName() == null ? "default" : hikari.getPoolName())
+                        .register(registry));
+    }
+
+    private static double saturation(HikariDataSource hikari) {
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool == null) return 0;
+        return pool.getActiveConnections() / (double) hikari.getMaximumPoolSize();
+    }
+}
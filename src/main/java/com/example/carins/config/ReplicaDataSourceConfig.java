@@ -0,0 +1,86 @@
+package com.example.carins.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+// Replaces the single auto-configured pool with a primary pool (spring.datasource.*) and a replica pool
+// (carins.datasource.replica.*) behind a ReplicaRoutingDataSource. Everything injecting DataSource gets the
+// router; only read-only transactions reach the replica, and their sessions never store into the Hibernate
+// caches. Off unless carins.datasource.replica.url is set.
+@Configuration
+@ConditionalOnProperty("carins.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean
+    @ConfigurationProperties("carins.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${carins.datasource.replica.url}") String url,
+                                              @Value("${carins.datasource.replica.username:}") String username,
+                                              @Value("${carins.datasource.replica.password:}") String password) {
+        HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(username).password(password).build();
+        replica.setPoolName("replica");
+        return replica;
+    }
+
+    // carins.datasource.replica.migrate is for local stand-ins (a second H2): a real replica gets its schema from
+    // the primary
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primary,
+                                 @Qualifier("replicaDataSource") HikariDataSource replica,
+                                 @Value("${carins.datasource.replica.read-your-writes:true}") boolean readYourWrites,
+                                 @Value("${carins.datasource.replica.migrate:false}") boolean migrateReplica,
+                                 @Value("${spring.flyway.locations:classpath:db/migration}") String[] locations) {
+        if (migrateReplica) {
+            Flyway.configure().dataSource(replica).locations(locations).load().migrate();
+        }
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, readYourWrites));
+    }
+
+    // Boot's adapter, set up from spring.jpa.* the same way, with the dialect that keeps replica reads out of the
+    // shared Hibernate caches
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties, DataSource dataSource) throws SQLException {
+        ReplicaJpaDialect dialect = new ReplicaJpaDialect(dataSource.unwrap(ReplicaRoutingDataSource.class));
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return dialect;
+            }
+        };
+        adapter.setShowSql(properties.isShowSql());
+        if (properties.getDatabase() != null) {
+            adapter.setDatabase(properties.getDatabase());
+        }
+        if (properties.getDatabasePlatform() != null) {
+            adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        }
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        return adapter;
+    }
+}
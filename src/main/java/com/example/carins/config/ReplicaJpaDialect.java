@@ -0,0 +1,63 @@
+package com.example.carins.config;
+
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Starts each transaction the {@link ReplicaRoutingDataSource} will send to the replica with an entity manager that
+ * bypasses the second-level and query caches. What a lagging replica returns would otherwise be cached as current
+ * and served to everyone, primary-pinned readers and read-your-writes requests included.
+ * <p>
+ * Storing alone cannot be turned off: on a query cache miss Hibernate caches the result whenever reading the cache
+ * was allowed. The caches still serve and fill from primary reads. The modes are set as entity manager properties
+ * when the transaction begins, before any find or query takes them, and restored when it ends, since with
+ * open-in-view the entity manager outlives the transaction.
+ */
+public class ReplicaJpaDialect extends HibernateJpaDialect {
+
+    private final ReplicaRoutingDataSource router;
+
+    public ReplicaJpaDialect(ReplicaRoutingDataSource router) {
+        this.router = router;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!router.routesToReplica(definition.isReadOnly())) {
+            return transactionData;
+        }
+        Map<String, Object> properties = entityManager.getProperties();
+        ReplicaTransactionData replica = new ReplicaTransactionData(transactionData, entityManager,
+                properties.get(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE),
+                properties.get(SpecHints.HINT_SPEC_CACHE_STORE_MODE));
+        entityManager.setProperty(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+        entityManager.setProperty(SpecHints.HINT_SPEC_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+        return replica;
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaTransactionData replica) {
+            EntityManager entityManager = replica.entityManager();
+            if (entityManager.isOpen()) {
+                entityManager.setProperty(SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, replica.retrieveMode());
+                entityManager.setProperty(SpecHints.HINT_SPEC_CACHE_STORE_MODE, replica.storeMode());
+            }
+            transactionData = replica.transactionData();
+        }
+        super.cleanupTransaction(transactionData);
+    }
+
+    private record ReplicaTransactionData(Object transactionData, EntityManager entityManager,
+                                          Object retrieveMode, Object storeMode) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.carins.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends connections for read-only transactions to the replica and everything else to the primary. The routing
+ * key is read when a connection is actually fetched, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: transaction managers take their
+ * connection before the transaction is marked read-only, and the proxy defers that to the first statement.
+ * <p>
+ * With read-your-writes on, a request that has committed a read-write transaction keeps its later reads on the
+ * primary, so it never misses its own write on a lagging replica. Code that must see the latest commit whatever
+ * the request did, like in-memory indexes reconciled against commit listeners, reads inside
+ * {@link #pinToPrimary()}. Connections outside a transaction always come from the primary.
+ * <p>
+ * Sessions of transactions routed here must not fill the shared Hibernate caches, see {@link ReplicaJpaDialect}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private enum Target {PRIMARY, REPLICA}
+
+    private static final String WROTE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".WROTE";
+    private static final ThreadLocal<Integer> PINS = new ThreadLocal<>();
+
+    private final boolean readYourWrites;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, boolean readYourWrites) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // reads on this thread go to the primary until the pin is closed; pins nest
+    public static PrimaryPin pinToPrimary() {
+        Integer pins = PINS.get();
+        PINS.set(pins == null ? 1 : pins + 1);
+        return new PrimaryPin();
+    }
+
+    public static final class PrimaryPin implements AutoCloseable {
+        private boolean closed;
+
+        private PrimaryPin() {
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            int pins = PINS.get();
+            if (pins == 1) {
+                PINS.remove();
+            } else {
+                PINS.set(pins - 1);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (readYourWrites && TransactionSynchronizationManager.isSynchronizationActive()) {
+                markRequestOnCommit();
+            }
+            return Target.PRIMARY;
+        }
+        return routesToReplica(true) ? Target.REPLICA : Target.PRIMARY;
+    }
+
+    // whether a transaction starting on this thread now would read the replica
+    public boolean routesToReplica(boolean readOnly) {
+        return readOnly && PINS.get() == null && !(readYourWrites && requestWrote());
+    }
+
+    // a rolled back transaction wrote nothing, so only a commit keeps the request on the primary
+    private static void markRequestOnCommit() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null || request.getAttribute(WROTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                request.setAttribute(WROTE_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+            }
+        });
+    }
+
+    private static boolean requestWrote() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request != null && request.getAttribute(WROTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+}
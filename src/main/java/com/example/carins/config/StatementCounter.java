@@ -0,0 +1,30 @@
+package com.example.carins.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts the SQL statements Hibernate prepares on the current thread while a count is open.
+// Statements issued through JdbcTemplate do not pass through Hibernate and are not counted.
+public final class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    public static void start() {
+        CURRENT.set(new int[1]);
+    }
+
+    // returns the statements counted since start() and closes the count
+    public static int stop() {
+        int[] count = CURRENT.get();
+        CURRENT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = CURRENT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.carins.exception;
+
+public class ClaimBacklogFullException extends RuntimeException {
+    private final long pending;
+
+    public ClaimBacklogFullException(long pending) {
+        super("Claim backlog is full with " + pending + " pending claims, retry later");
+        this.pending = pending;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+}
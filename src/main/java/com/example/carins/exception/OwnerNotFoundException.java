@@ -0,0 +1,14 @@
+package com.example.carins.exception;
+
+public class OwnerNotFoundException extends RuntimeException {
+    private final Long ownerId;
+
+    public OwnerNotFoundException(Long ownerId) {
+        super("Owner not found with id: " + ownerId);
+        this.ownerId = ownerId;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+}
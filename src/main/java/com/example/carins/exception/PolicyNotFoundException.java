@@ -0,0 +1,20 @@
+package com.example.carins.exception;
+
+public class PolicyNotFoundException extends RuntimeException {
+    private final Long carId;
+    private final Long policyId;
+
+    public PolicyNotFoundException(Long carId, Long policyId) {
+        super("Policy " + policyId + " not found for car " + carId);
+        this.carId = carId;
+        this.policyId = policyId;
+    }
+
+    public Long getCarId() {
+        return carId;
+    }
+
+    public Long getPolicyId() {
+        return policyId;
+    }
+}
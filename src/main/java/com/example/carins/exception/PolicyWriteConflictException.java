@@ -0,0 +1,8 @@
+package com.example.carins.exception;
+
+// another writer changed the policy or the car's policies first; the client should reload and retry
+public class PolicyWriteConflictException extends RuntimeException {
+    public PolicyWriteConflictException(String message) {
+        super(message);
+    }
+}
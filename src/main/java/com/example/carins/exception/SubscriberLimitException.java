@@ -0,0 +1,7 @@
+package com.example.carins.exception;
+
+public class SubscriberLimitException extends RuntimeException {
+    public SubscriberLimitException(int limit) {
+        super("The event stream already has " + limit + " subscribers, retry later");
+    }
+}
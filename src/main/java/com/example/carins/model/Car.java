@@ -1,11 +1,22 @@
 package com.example.carins.model;
 
+import com.example.carins.config.CacheConfig;
+import com.example.carins.service.DataVersionEntityListener;
+import com.example.carins.service.PolicyIndexEntityListener;
+import com.example.carins.service.PolicyTreeEntityListener;
+import com.example.carins.service.VinIndexEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.CAR_REGION)
 @Table(name = "car")
+@EntityListeners({PolicyIndexEntityListener.class, PolicyTreeEntityListener.class, VinIndexEntityListener.class,
+        DataVersionEntityListener.class})
 public class Car {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,5 +1,6 @@
 package com.example.carins.model;
 
+import com.example.carins.service.DataVersionEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -9,9 +10,12 @@ import java.time.LocalDate;
 
 @Entity
 @Table(name = "insuranceclaim")
+@EntityListeners(DataVersionEntityListener.class)
 public class InsuranceClaim {
+    // pooled sequence rather than IDENTITY so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "insuranceclaim_seq")
+    @SequenceGenerator(name = "insuranceclaim_seq", sequenceName = "insuranceclaim_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -27,6 +31,10 @@ public class InsuranceClaim {
     @Column(nullable = false)
     private LocalDate claimDate;
 
+    // set for claims accepted through the asynchronous claim log; makes replaying the log idempotent
+    @Column(unique = true)
+    private Long trackingId;
+
     public InsuranceClaim() {
     }
 
@@ -77,4 +85,12 @@ public class InsuranceClaim {
         this.claimDate = claimDate;
     }
 
+    public Long getTrackingId() {
+        return trackingId;
+    }
+
+    public void setTrackingId(Long trackingId) {
+        this.trackingId = trackingId;
+    }
+
 }
@@ -1,12 +1,21 @@
 package com.example.carins.model;
 
+import com.example.carins.config.CacheConfig;
+import com.example.carins.service.DataVersionEntityListener;
+import com.example.carins.service.PolicyIndexEntityListener;
+import com.example.carins.service.PolicyTreeEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDate;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.POLICY_REGION)
 @Table(name = "insurancepolicy")
+@EntityListeners({PolicyIndexEntityListener.class, PolicyTreeEntityListener.class, DataVersionEntityListener.class})
 public class InsurancePolicy {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,6 +31,10 @@ public class InsurancePolicy {
     @Column(nullable = false)
     private LocalDate endDate;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public InsurancePolicy() {
     }
 
@@ -67,4 +80,8 @@ public class InsurancePolicy {
     public void setEndDate(LocalDate endDate) {
         this.endDate = endDate;
     }
+
+    public Long getVersion() {
+        return version;
+    }
 }
@@ -1,11 +1,18 @@
 package com.example.carins.model;
 
+import com.example.carins.config.CacheConfig;
+import com.example.carins.service.DataVersionEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.OWNER_REGION)
 @Table(name = "owner")
+@EntityListeners(DataVersionEntityListener.class)
 public class Owner {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,35 @@
+package com.example.carins.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "scheduler_watermark")
+public class SchedulerWatermark {
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDate lastProcessedDate;
+
+    public SchedulerWatermark() {
+    }
+
+    public SchedulerWatermark(String name, LocalDate lastProcessedDate) {
+        this.name = name;
+        this.lastProcessedDate = lastProcessedDate;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDate getLastProcessedDate() {
+        return lastProcessedDate;
+    }
+
+    public void setLastProcessedDate(LocalDate lastProcessedDate) {
+        this.lastProcessedDate = lastProcessedDate;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.carins.repo;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface CarHistoryRowView {
+    String getEventType();
+
+    LocalDate getEventDate();
+
+    LocalDate getEndDate();
+
+    String getProvider();
+
+    String getDescription();
+
+    BigDecimal getAmount();
+}
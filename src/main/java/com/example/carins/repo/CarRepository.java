@@ -1,20 +1,60 @@
 package com.example.carins.repo;
 
 import com.example.carins.model.Car;
+import com.example.carins.web.dto.CarDto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CarRepository extends JpaRepository<Car, Long> {
-    // TODO: enforce unique VIN at DB and via validation (exercise)
     @EntityGraph(attributePaths = {"owner"})
     List<Car> findAll();
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Car> findByVin(String vin);
 
     Optional<Car> findById(Long id);
+
+    @Query("select new com.example.carins.web.dto.CarDto(c.id, c.vin, c.make, c.model, c.yearOfManufacture, " +
+            "o.id, o.name, o.email) " +
+            "from Car c join c.owner o " +
+            "where c.id > :afterId " +
+            "order by c.id")
+    List<CarDto> findPageAfter(@Param("afterId") long afterId, Limit limit);
+
+    // ordered by owner too, constant as it is, so H2 reads ix_car_owner in order instead of sorting the fleet
+    @Query("select c.id as id, c.vin as vin, c.make as make, c.model as model, " +
+            "c.yearOfManufacture as yearOfManufacture " +
+            "from Car c " +
+            "where c.owner.id = :ownerId and c.id > :afterId " +
+            "order by c.owner.id, c.id")
+    List<OwnerCarView> findOwnerCarsAfter(@Param("ownerId") long ownerId, @Param("afterId") long afterId,
+                                          Limit limit);
+
+    @Query("select c.id from Car c")
+    Stream<Long> streamAllIds();
+
+    @Query("select c.id as id, c.vin as vin from Car c")
+    Stream<CarVinView> streamAllVins();
+
+    @Query("select c.id from Car c where c.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select coalesce(min(c.id), 0) from Car c")
+    long findMinId();
+
+    @Query("select coalesce(max(c.id), 0) from Car c")
+    long findMaxId();
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.example.carins.repo;
+
+public interface CarVinView {
+    Long getId();
+
+    String getVin();
+}
@@ -0,0 +1,16 @@
+package com.example.carins.repo;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface ClaimView {
+    Long getId();
+
+    Long getCarId();
+
+    LocalDate getClaimDate();
+
+    String getDescription();
+
+    BigDecimal getAmount();
+}
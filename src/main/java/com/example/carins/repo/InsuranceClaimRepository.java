@@ -2,11 +2,31 @@ package com.example.carins.repo;
 
 import com.example.carins.model.InsuranceClaim;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface InsuranceClaimRepository extends JpaRepository<InsuranceClaim, Long> {
     List<InsuranceClaim> findByCarIdOrderByClaimDateAsc(Long carId);
+
+    @Query("select c.id as id, c.car.id as carId, c.claimDate as claimDate, c.description as description, " +
+            "c.amount as amount " +
+            "from InsuranceClaim c " +
+            "where c.car.id in :carIds and c.claimDate >= :since " +
+            "order by c.car.id, c.claimDate desc, c.id desc")
+    List<ClaimView> findRecentByCarIds(@Param("carIds") Collection<Long> carIds, @Param("since") LocalDate since);
+
+    List<InsuranceClaim> findByTrackingIdIn(Collection<Long> trackingIds);
+
+    @Query("select max(c.trackingId) from InsuranceClaim c where c.trackingId between :from and :to")
+    Optional<Long> findMaxTrackingIdBetween(@Param("from") long from, @Param("to") long to);
+
+    @Query("select c.id from InsuranceClaim c where c.trackingId = :trackingId")
+    Optional<Long> findIdByTrackingId(@Param("trackingId") long trackingId);
 }
\ No newline at end of file
@@ -1,13 +1,19 @@
 package com.example.carins.repo;
 
 import com.example.carins.model.InsurancePolicy;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface InsurancePolicyRepository extends JpaRepository<InsurancePolicy, Long> {
@@ -17,11 +23,93 @@ public interface InsurancePolicyRepository extends JpaRepository<InsurancePolicy
             "where p.car.id = :carId " +
             "and p.startDate <= :date " +
             "and p.endDate >= :date")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     boolean existsActiveOnDate(@Param("carId") Long carId, @Param("date") LocalDate date);
 
     List<InsurancePolicy> findByCarId(Long carId);
 
-    @Query("select p from InsurancePolicy p " +
-            "where p.endDate = :date")
-    List<InsurancePolicy> findPoliciesExpiringOnDate(@Param("date") LocalDate date);
+    // policy starts overlapping the range (also those started before it, needed for claim attribution),
+    // policy ends that already passed, and the newest claimLimit claims, ordered by date with starts first
+    // within a day: a car has few policies but can have a long claim history, so only claims are capped
+    @Query("select h.eventType as eventType, h.eventDate as eventDate, h.endDate as endDate, " +
+            "h.provider as provider, h.description as description, h.amount as amount " +
+            "from (" +
+            "select 'INSURANCE_POLICY_START' as eventType, p.startDate as eventDate, p.endDate as endDate, " +
+            "p.provider as provider, cast(null as String) as description, cast(null as BigDecimal) as amount " +
+            "from InsurancePolicy p " +
+            "where p.car.id = :carId and p.startDate <= :to and p.endDate >= :from " +
+            "union all " +
+            "select 'INSURANCE_POLICY_END', p.endDate, p.endDate, p.provider, cast(null as String), cast(null as BigDecimal) " +
+            "from InsurancePolicy p " +
+            "where p.car.id = :carId and p.endDate between :from and :to and p.endDate < :today " +
+            "union all " +
+            "(select 'INSURANCE_CLAIM', c.claimDate, c.claimDate, cast(null as String), c.description, c.amount " +
+            "from InsuranceClaim c " +
+            "where c.car.id = :carId and c.claimDate between :from and :to " +
+            "order by c.claimDate desc, c.id desc fetch first :claimLimit rows only)" +
+            ") h " +
+            "order by h.eventDate, h.eventType desc")
+    List<CarHistoryRowView> findHistoryRows(@Param("carId") Long carId,
+                                            @Param("from") LocalDate from,
+                                            @Param("to") LocalDate to,
+                                            @Param("today") LocalDate today,
+                                            @Param("claimLimit") int claimLimit);
+
+    // the claim rows of findHistoryRows alone, newest first, for when the policy rows come from the interval index
+    @Query("select 'INSURANCE_CLAIM' as eventType, c.claimDate as eventDate, c.claimDate as endDate, " +
+            "cast(null as String) as provider, c.description as description, c.amount as amount " +
+            "from InsuranceClaim c " +
+            "where c.car.id = :carId and c.claimDate between :from and :to " +
+            "order by c.claimDate desc, c.id desc")
+    List<CarHistoryRowView> findClaimHistoryRows(@Param("carId") Long carId,
+                                                 @Param("from") LocalDate from,
+                                                 @Param("to") LocalDate to,
+                                                 Limit limit);
+
+    // keyset on (endDate, id) so the end_date index serves both the range and the order
+    @Query("select p.id as id, p.car.id as carId, p.startDate as startDate, p.endDate as endDate, " +
+            "p.provider as provider " +
+            "from InsurancePolicy p " +
+            "where p.endDate > :after " +
+            "and p.endDate <= :upTo " +
+            "and (p.endDate > :afterEndDate or (p.endDate = :afterEndDate and p.id > :afterId)) " +
+            "order by p.endDate, p.id")
+    List<PolicyProviderView> findExpiredBetween(@Param("after") LocalDate after,
+                                                @Param("upTo") LocalDate upTo,
+                                                @Param("afterEndDate") LocalDate afterEndDate,
+                                                @Param("afterId") long afterId,
+                                                Limit limit);
+
+    @Query("select p.id as id, p.car.id as carId, p.startDate as startDate, p.endDate as endDate, " +
+            "p.provider as provider " +
+            "from InsurancePolicy p " +
+            "where p.startDate is not null " +
+            "order by p.car.id, p.startDate")
+    Stream<PolicyProviderView> streamAllIntervals();
+
+    @Query("select p.id as id, p.car.id as carId, p.startDate as startDate, p.endDate as endDate " +
+            "from InsurancePolicy p " +
+            "where p.car.id in :carIds " +
+            "and p.startDate <= :to " +
+            "and p.endDate >= :from")
+    List<PolicyIntervalView> findIntervalsOverlapping(@Param("carIds") Collection<Long> carIds,
+                                                      @Param("from") LocalDate from,
+                                                      @Param("to") LocalDate to);
+
+    @Query("select p.id as id, p.car.id as carId, p.startDate as startDate, p.endDate as endDate, " +
+            "p.provider as provider " +
+            "from InsurancePolicy p " +
+            "where p.car.id in :carIds " +
+            "and p.startDate <= :to " +
+            "and p.endDate >= :from")
+    List<PolicyProviderView> findProvidersOverlapping(@Param("carIds") Collection<Long> carIds,
+                                                      @Param("from") LocalDate from,
+                                                      @Param("to") LocalDate to);
+
+    @Query("select coalesce(max(p.id), 0) from InsurancePolicy p")
+    long findMaxId();
+
+    // every policy update bumps its version, so the sum moves with date edits that leave counts and ids alone
+    @Query("select coalesce(sum(p.version), 0) from InsurancePolicy p")
+    long sumVersions();
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.carins.repo;
+
+public interface OwnerCarView {
+    Long getId();
+
+    String getVin();
+
+    String getMake();
+
+    String getModel();
+
+    int getYearOfManufacture();
+}
@@ -0,0 +1,13 @@
+package com.example.carins.repo;
+
+import java.time.LocalDate;
+
+public interface PolicyIntervalView {
+    Long getId();
+
+    Long getCarId();
+
+    LocalDate getStartDate();
+
+    LocalDate getEndDate();
+}
@@ -0,0 +1,5 @@
+package com.example.carins.repo;
+
+public interface PolicyProviderView extends PolicyIntervalView {
+    String getProvider();
+}
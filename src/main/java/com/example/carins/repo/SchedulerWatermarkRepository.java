@@ -0,0 +1,9 @@
+package com.example.carins.repo;
+
+import com.example.carins.model.SchedulerWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SchedulerWatermarkRepository extends JpaRepository<SchedulerWatermark, String> {
+}
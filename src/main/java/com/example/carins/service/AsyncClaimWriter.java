@@ -0,0 +1,291 @@
+package com.example.carins.service;
+
+import com.example.carins.exception.ClaimBacklogFullException;
+import com.example.carins.model.InsuranceClaim;
+import com.example.carins.repo.CarRepository;
+import com.example.carins.repo.InsuranceClaimRepository;
+import com.example.carins.web.dto.AsyncClaimStatusDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind claim registration. {@link #submit} validates against the policy index, appends the claim to the
+ * {@link ClaimLog} and returns its tracking id; a background thread drains the log into the database in batched
+ * transactions and records the last written id in a checkpoint file. The checkpoint only moves, and log segments
+ * are only deleted, once H2 has the batch on disk ({@code CHECKPOINT SYNC}): a commit can sit in memory for up to
+ * {@code WRITE_DELAY} after it returned, and the log is the only durable copy until then. On start the writer
+ * resumes after the checkpoint; claims written just before a crash but after the last checkpoint are recognised
+ * by their tracking id and skipped.
+ * <p>
+ * Tracking ids are unique across nodes when issued: the configured {@code node-id} fills the bits above
+ * {@link #SEQUENCE_BITS}, and each node counts within its own range, after the highest id of that range the
+ * database holds as well as after its log, so a wiped log directory does not reissue ids either. Ids stay below
+ * 2^53 and survive JSON clients that read numbers as doubles. Should a misconfigured second node with the same
+ * id still clash, the record whose id the database holds for a different claim is rejected and the writer moves
+ * on, as it does for a car deleted after submission.
+ */
+@Service
+public class AsyncClaimWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncClaimWriter.class);
+
+    public static final int SEQUENCE_BITS = 43;
+    private static final int MAX_NODE_ID = (1 << (53 - SEQUENCE_BITS)) - 1;
+
+    private static final int AMOUNT_SCALE = 2;
+    private static final int MAX_REJECTIONS_KEPT = 10_000;
+    private static final Duration IDLE_WAIT = Duration.ofMillis(50);
+    private static final Duration RETRY_WAIT = Duration.ofSeconds(1);
+
+    private final CarService carService;
+    private final CarRepository carRepository;
+    private final InsuranceClaimRepository claimRepository;
+    private final ClaimRollupService rollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean force;
+    private final int batchSize;
+    private final long maxPending;
+    private final long firstTrackingId;
+    private final long lastTrackingId;
+
+    // rejection reasons by tracking id, oldest evicted first; gone after a restart (status then says REJECTED only)
+    private final Map<Long, String> rejections = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_REJECTIONS_KEPT;
+        }
+    });
+
+    private ClaimLog log;
+    private volatile long written;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public AsyncClaimWriter(CarService carService,
+                            CarRepository carRepository,
+                            InsuranceClaimRepository claimRepository,
+                            ClaimRollupService rollupService,
+                            PlatformTransactionManager transactionManager,
+                            JdbcTemplate jdbcTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${carins.claims.async.enabled:false}") boolean enabled,
+                            @Value("${carins.claims.async.log-dir:./data/claim-log}") String directory,
+                            @Value("${carins.claims.async.segment-bytes:67108864}") int segmentBytes,
+                            @Value("${carins.claims.async.force:true}") boolean force,
+                            @Value("${carins.claims.async.batch-size:1000}") int batchSize,
+                            @Value("${carins.claims.async.max-pending:100000}") long maxPending,
+                            @Value("${carins.claims.async.node-id:0}") int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("carins.claims.async.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.carService = carService;
+        this.carRepository = carRepository;
+        this.claimRepository = claimRepository;
+        this.rollupService = rollupService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        this.force = force;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.firstTrackingId = ((long) nodeId << SEQUENCE_BITS) + 1;
+        this.lastTrackingId = ((long) nodeId << SEQUENCE_BITS) + (1L << SEQUENCE_BITS) - 1;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() throws IOException {
+        if (!enabled || running) return;
+        long checkpoint = readCheckpoint();
+        // records after the checkpoint up to this id were written or rejected before a crash, and are skipped
+        written = Math.max(Math.max(checkpoint, firstTrackingId - 1),
+                claimRepository.findMaxTrackingIdBetween(firstTrackingId, lastTrackingId).orElse(0L));
+        log = new ClaimLog(directory, segmentBytes, force, written);
+        Gauge.builder("carins.claims.async.pending", this, AsyncClaimWriter::pending)
+                .description("Claims accepted into the claim log and not yet written to the database")
+                .register(meterRegistry);
+        logger.info("Async claim log at {}: resuming after tracking id {}, {} pending", directory, written, pending());
+
+        running = true;
+        ClaimLog.Reader reader = log.readerAfter(checkpoint);
+        writerThread = Thread.ofPlatform().daemon().name("claim-log-writer").start(() -> drain(reader));
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void stop() throws InterruptedException {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join();
+    }
+
+    public long submit(Long carId, LocalDate claimDate, String description, BigDecimal amount) {
+        if (!running) {
+            throw new IllegalStateException("Asynchronous claim registration is not running");
+        }
+        carService.checkClaimable(carId, claimDate);
+        long pending = pending();
+        if (pending >= maxPending) {
+            throw new ClaimBacklogFullException(pending);
+        }
+        long trackingId;
+        if (log.lastAppended() >= lastTrackingId) {
+            throw new IllegalStateException("Tracking ids of this node are used up");
+        }
+        try {
+            trackingId = log.append(carId, claimDate, amount.setScale(AMOUNT_SCALE).unscaledValue().longValueExact(),
+                    description);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LockSupport.unpark(writerThread);
+        return trackingId;
+    }
+
+    public AsyncClaimStatusDto status(long trackingId) {
+        if (log == null || trackingId < firstTrackingId || trackingId > log.lastAppended()) {
+            return AsyncClaimStatusDto.of(trackingId, AsyncClaimStatusDto.Status.UNKNOWN);
+        }
+        if (trackingId > written) {
+            return AsyncClaimStatusDto.of(trackingId, AsyncClaimStatusDto.Status.PENDING);
+        }
+        // checked first: a clashing record's id belongs to the other node's claim in the database
+        String rejection = rejections.get(trackingId);
+        if (rejection != null) {
+            return AsyncClaimStatusDto.rejected(trackingId, rejection);
+        }
+        return claimRepository.findIdByTrackingId(trackingId)
+                .map(claimId -> AsyncClaimStatusDto.written(trackingId, claimId))
+                .orElseGet(() -> AsyncClaimStatusDto.rejected(trackingId, rejections.get(trackingId)));
+    }
+
+    private long pending() {
+        return log.lastAppended() - written;
+    }
+
+    // keeps retrying a failed batch: the log is the source of truth, so nothing is skipped
+    private void drain(ClaimLog.Reader reader) {
+        List<ClaimLog.Entry> batch = List.of();
+        while (running) {
+            if (batch.isEmpty()) {
+                batch = reader.next(batchSize);
+                if (batch.isEmpty()) {
+                    LockSupport.parkNanos(IDLE_WAIT.toNanos());
+                    continue;
+                }
+            }
+            try {
+                List<ClaimLog.Entry> toWrite = batch;
+                transactionTemplate.executeWithoutResult(status -> writeBatch(toWrite));
+                long last = batch.get(batch.size() - 1).trackingId();
+                written = Math.max(written, last);
+                jdbcTemplate.execute("CHECKPOINT SYNC");
+                writeCheckpoint(last);
+                log.deleteUpTo(last);
+                batch = List.of();
+            } catch (RuntimeException | IOException e) {
+                logger.warn("Writing {} claims from the claim log failed, retrying", batch.size(), e);
+                LockSupport.parkNanos(RETRY_WAIT.toNanos());
+            }
+        }
+    }
+
+    private void writeBatch(List<ClaimLog.Entry> batch) {
+        Set<Long> trackingIds = new HashSet<>();
+        Set<Long> carIds = new HashSet<>();
+        for (ClaimLog.Entry entry : batch) {
+            trackingIds.add(entry.trackingId());
+            carIds.add(entry.carId());
+        }
+        Map<Long, InsuranceClaim> alreadyWritten = new HashMap<>();
+        for (InsuranceClaim claim : claimRepository.findByTrackingIdIn(trackingIds)) {
+            alreadyWritten.put(claim.getTrackingId(), claim);
+        }
+        Set<Long> existingCars = new HashSet<>(carRepository.findExistingIds(carIds));
+
+        List<InsuranceClaim> claims = new ArrayList<>(batch.size());
+        for (ClaimLog.Entry entry : batch) {
+            InsuranceClaim existing = alreadyWritten.get(entry.trackingId());
+            if (existing != null) {
+                if (!isSameClaim(existing, entry)) {
+                    logger.error("Tracking id {} is already used by claim {}; is carins.claims.async.node-id set "
+                            + "to the same value on two nodes?", entry.trackingId(), existing.getId());
+                    rejections.put(entry.trackingId(), "Tracking id " + entry.trackingId()
+                            + " is already used by another claim");
+                }
+                continue;
+            }
+            if (!existingCars.contains(entry.carId())) {
+                rejections.put(entry.trackingId(), "Car not found with id: " + entry.carId());
+                continue;
+            }
+            InsuranceClaim claim = new InsuranceClaim(carRepository.getReferenceById(entry.carId()), entry.claimDate(),
+                    entry.description(), BigDecimal.valueOf(entry.amountUnscaled(), AMOUNT_SCALE));
+            claim.setTrackingId(entry.trackingId());
+            claims.add(claim);
+        }
+        claimRepository.saveAll(claims);
+        rollupService.record(claims);
+    }
+
+    // a record replayed after a crash finds the claim it wrote; anything else holding its id is another claim
+    private static boolean isSameClaim(InsuranceClaim claim, ClaimLog.Entry entry) {
+        return claim.getCar().getId().equals(entry.carId())
+                && claim.getClaimDate().equals(entry.claimDate())
+                && claim.getAmount().compareTo(BigDecimal.valueOf(entry.amountUnscaled(), AMOUNT_SCALE)) == 0
+                && claim.getDescription().equals(entry.description());
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve("checkpoint");
+        if (!Files.exists(checkpoint)) return 0;
+        return Long.parseLong(Files.readString(checkpoint, StandardCharsets.US_ASCII).trim());
+    }
+
+    private void writeCheckpoint(long trackingId) throws IOException {
+        Path temp = directory.resolve("checkpoint.tmp");
+        Files.writeString(temp, Long.toString(trackingId), StandardCharsets.US_ASCII);
+        Files.move(temp, directory.resolve("checkpoint"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
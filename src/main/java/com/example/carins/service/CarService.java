@@ -5,52 +5,183 @@ import com.example.carins.exception.DuplicateVinException;
 import com.example.carins.exception.InvalidInsuranceException;
 import com.example.carins.model.Car;
 import com.example.carins.model.InsuranceClaim;
-import com.example.carins.model.InsurancePolicy;
+import com.example.carins.repo.CarHistoryRowView;
 import com.example.carins.repo.CarRepository;
 import com.example.carins.repo.InsuranceClaimRepository;
 import com.example.carins.repo.InsurancePolicyRepository;
+import com.example.carins.repo.PolicyIntervalView;
+import com.example.carins.web.dto.CarDto;
 import com.example.carins.web.dto.CarHistoryEventDto;
+import com.example.carins.web.dto.ClaimImportResultDto;
+import com.example.carins.web.dto.InsuranceValidityResultDto;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+// the read-only methods run in read-only transactions, which go to the read replica when one is configured
 @Service
 public class CarService {
 
+    private static final LocalDate HISTORY_MIN_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate HISTORY_MAX_DATE = LocalDate.of(9999, 12, 31);
+    private static final String VIN_CONSTRAINT = "uk_car_vin";
+
     private final CarRepository carRepository;
     private final InsurancePolicyRepository policyRepository;
     private final InsuranceClaimRepository claimRepository;
+    private final PolicyIntervalIndex policyIndex;
+    private final ClaimRollupService rollupService;
+    private final VinIndex vinIndex;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public CarService(CarRepository carRepository, InsurancePolicyRepository policyRepository, InsuranceClaimRepository claimRepository) {
+    public CarService(CarRepository carRepository, InsurancePolicyRepository policyRepository,
+                      InsuranceClaimRepository claimRepository, PolicyIntervalIndex policyIndex,
+                      ClaimRollupService rollupService, VinIndex vinIndex,
+                      PlatformTransactionManager transactionManager) {
         this.carRepository = carRepository;
         this.policyRepository = policyRepository;
         this.claimRepository = claimRepository;
+        this.policyIndex = policyIndex;
+        this.rollupService = rollupService;
+        this.vinIndex = vinIndex;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
+    @Transactional(readOnly = true)
     public List<Car> listCars() {
         return carRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
+    public List<CarDto> listCarsAfter(long afterId, int limit) {
+        return carRepository.findPageAfter(afterId, Limit.of(limit));
+    }
+
+    // the index answers without a transaction, which would cost more than the lookup; the database fallback gets
+    // a read-only one so both of its queries go to the replica
     public boolean isInsuranceValid(Long carId, LocalDate date) {
         if (carId == null || date == null) return false;
-        if (carRepository.findById(carId).isEmpty()) {
+        if (policyIndex.isReady()) {
+            return checkInsurance(carId, date);
+        }
+        return Boolean.TRUE.equals(readOnlyTransaction.execute(status -> checkInsurance(carId, date)));
+    }
+
+    private boolean checkInsurance(Long carId, LocalDate date) {
+        if (!carExists(carId)) {
             throw new CarNotFoundException(carId);
         }
-        return policyRepository.existsActiveOnDate(carId, date);
+        return isActiveOn(carId, date);
+    }
+
+    @Transactional(readOnly = true)
+    public List<InsuranceValidityResultDto> checkInsuranceValidity(List<InsuranceCheck> checks) {
+        if (checks.isEmpty()) return List.of();
+        if (policyIndex.isReady()) {
+            return checks.stream()
+                    .map(check -> policyIndex.containsCar(check.carId())
+                            ? InsuranceValidityResultDto.valid(check.carId(), check.date().toString(),
+                                    policyIndex.isActiveOn(check.carId(), check.date()))
+                            : carNotFound(check))
+                    .toList();
+        }
+
+        Set<Long> carIds = new HashSet<>();
+        LocalDate from = LocalDate.MAX;
+        LocalDate to = LocalDate.MIN;
+        for (InsuranceCheck check : checks) {
+            carIds.add(check.carId());
+            if (check.date().isBefore(from)) from = check.date();
+            if (check.date().isAfter(to)) to = check.date();
+        }
+
+        Set<Long> existingCarIds = new HashSet<>(carRepository.findExistingIds(carIds));
+        Map<Long, List<PolicyIntervalView>> intervalsByCar = existingCarIds.isEmpty() ? Map.of() : policyRepository
+                .findIntervalsOverlapping(existingCarIds, from, to).stream()
+                .collect(Collectors.groupingBy(PolicyIntervalView::getCarId));
+
+        List<InsuranceValidityResultDto> results = new ArrayList<>(checks.size());
+        for (InsuranceCheck check : checks) {
+            if (!existingCarIds.contains(check.carId())) {
+                results.add(carNotFound(check));
+                continue;
+            }
+            boolean valid = false;
+            for (PolicyIntervalView interval : intervalsByCar.getOrDefault(check.carId(), List.of())) {
+                if (!check.date().isBefore(interval.getStartDate()) && !check.date().isAfter(interval.getEndDate())) {
+                    valid = true;
+                    break;
+                }
+            }
+            results.add(InsuranceValidityResultDto.valid(check.carId(), check.date().toString(), valid));
+        }
+        return results;
     }
 
+    private static InsuranceValidityResultDto carNotFound(InsuranceCheck check) {
+        return InsuranceValidityResultDto.error(check.carId(), check.date().toString(),
+                "Car not found with id: " + check.carId());
+    }
+
+    // the VIN index turns colliding registrations away without a query (including one racing a registration
+    // still in flight); the unique constraint settles whatever the index cannot see
     public Car saveCar(Car car) {
-        if (carRepository.findByVin(car.getVin()).isPresent()) {
-            throw new DuplicateVinException(car.getVin());
+        String vin = VinIndex.normalize(car.getVin());
+        car.setVin(vin);
+        if (vin != null && !vinIndex.reserve(vin)) {
+            throw new DuplicateVinException(vin);
+        }
+        try {
+            return carRepository.save(car);
+        } catch (DataIntegrityViolationException e) {
+            if (isVinConflict(e)) {
+                throw new DuplicateVinException(vin);
+            }
+            throw e;
+        } finally {
+            if (vin != null) {
+                vinIndex.releaseAfterCompletion(vin);
+            }
+        }
+    }
+
+    private static boolean isVinConflict(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT).contains(VIN_CONSTRAINT);
+            }
         }
-        return carRepository.save(car);
+        return false;
     }
 
+    @Transactional(readOnly = true)
+    public Optional<CarDto> findCarByVin(String vin) {
+        Optional<Car> car = vinIndex.isReady()
+                ? Optional.ofNullable(vinIndex.find(vin)).flatMap(carRepository::findById)
+                : carRepository.findByVin(VinIndex.normalize(vin));
+        return car.map(found -> new CarDto(found.getId(), found.getVin(), found.getMake(), found.getModel(),
+                found.getYearOfManufacture(), found.getOwner().getId(), found.getOwner().getName(),
+                found.getOwner().getEmail()));
+    }
+
+    @Transactional
     public InsuranceClaim registerClaim(Long carId, LocalDate claimDate, String description, BigDecimal amount) {
 
         Optional<Car> carOpt = carRepository.findById(carId);
@@ -58,69 +189,199 @@ public class CarService {
             throw new CarNotFoundException(carId);
         }
 
-        boolean valid = this.isInsuranceValid(carId, claimDate);
-        if (!valid) {
+        if (!isActiveOn(carId, claimDate)) {
             throw new InvalidInsuranceException(carId, claimDate);
         }
 
         Car car = carOpt.get();
-        InsuranceClaim claim = new InsuranceClaim(car, claimDate, description, amount);
-        return claimRepository.save(claim);
+        InsuranceClaim claim = claimRepository.save(new InsuranceClaim(car, claimDate, description, amount));
+        rollupService.record(List.of(claim));
+        return claim;
     }
 
-    public List<CarHistoryEventDto> getCarHistory(Long carId) {
-        if (carRepository.findById(carId).isEmpty()) {
+    // registerClaim's checks without loading the car; answered from the policy index once it is warm
+    public void checkClaimable(Long carId, LocalDate claimDate) {
+        if (carId == null || !carExists(carId)) {
             throw new CarNotFoundException(carId);
         }
+        if (!isActiveOn(carId, claimDate)) {
+            throw new InvalidInsuranceException(carId, claimDate);
+        }
+    }
+
+    // validates the whole batch against one validity snapshot, then persists the accepted claims in a
+    // single transaction so Hibernate can send them as JDBC batches
+    @Transactional
+    public List<ClaimImportResultDto> registerClaims(List<ClaimSubmission> submissions) {
+        List<InsuranceValidityResultDto> validity = checkInsuranceValidity(submissions.stream()
+                .map(submission -> new InsuranceCheck(submission.carId(), submission.claimDate()))
+                .toList());
 
-        List<CarHistoryEventDto> events = new ArrayList<>();
-
-        List<InsurancePolicy> policies = policyRepository.findByCarId(carId);
-
-        for (InsurancePolicy policy : policies) {
-            events.add(new CarHistoryEventDto(
-                    "INSURANCE_POLICY_START",
-                    policy.getStartDate(),
-                    String.format("Insurance policy started with %s (valid until %s)",
-                            policy.getProvider(), policy.getEndDate()),
-                    null,
-                    policy.getProvider()
-            ));
-
-            if (policy.getEndDate().isBefore(LocalDate.now())) {
-                events.add(new CarHistoryEventDto(
-                        "INSURANCE_POLICY_END",
-                        policy.getEndDate(),
-                        String.format("Insurance policy with %s expired", policy.getProvider()),
-                        null,
-                        policy.getProvider()
-                ));
+        List<InsuranceClaim> accepted = new ArrayList<>(submissions.size());
+        for (int i = 0; i < submissions.size(); i++) {
+            ClaimSubmission submission = submissions.get(i);
+            if (Boolean.TRUE.equals(validity.get(i).valid())) {
+                accepted.add(new InsuranceClaim(carRepository.getReferenceById(submission.carId()),
+                        submission.claimDate(), submission.description(), submission.amount()));
             }
         }
+        claimRepository.saveAll(accepted);
+        rollupService.record(accepted);
 
-        List<InsuranceClaim> claims = claimRepository.findByCarIdOrderByClaimDateAsc(carId);
+        List<ClaimImportResultDto> results = new ArrayList<>(submissions.size());
+        int next = 0;
+        for (int i = 0; i < submissions.size(); i++) {
+            ClaimSubmission submission = submissions.get(i);
+            InsuranceValidityResultDto check = validity.get(i);
+            if (check.error() != null) {
+                results.add(ClaimImportResultDto.rejected(submission.line(), submission.carId(), check.error()));
+            } else if (!check.valid()) {
+                results.add(ClaimImportResultDto.rejected(submission.line(), submission.carId(),
+                        "No active insurance policy found for car " + submission.carId()
+                                + " on date: " + submission.claimDate()));
+            } else {
+                results.add(ClaimImportResultDto.created(submission.line(), submission.carId(),
+                        accepted.get(next++).getId()));
+            }
+        }
+        return results;
+    }
 
-        for (InsuranceClaim claim : claims) {
-            String providerName = "Unknown";
-            for (InsurancePolicy policy : policies) {
-                if (!claim.getClaimDate().isBefore(policy.getStartDate()) &&
-                        !claim.getClaimDate().isAfter(policy.getEndDate())) {
-                    providerName = policy.getProvider();
-                    break;
+    @Transactional(readOnly = true)
+    public List<CarHistoryEventDto> getCarHistory(Long carId) {
+        return getCarHistory(carId, null, null, null);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CarHistoryEventDto> getCarHistory(Long carId, LocalDate from, LocalDate to, Integer limit) {
+        if (!carExists(carId)) {
+            throw new CarNotFoundException(carId);
+        }
+        LocalDate rangeFrom = from != null ? from : HISTORY_MIN_DATE;
+        LocalDate rangeTo = to != null ? to : HISTORY_MAX_DATE;
+
+        LocalDate today = LocalDate.now();
+        // only the newest limit claims can make the newest limit events, and the database caps them
+        List<CarHistoryRowView> rows = policyIndex.isReady()
+                ? indexedHistoryRows(carId, rangeFrom, rangeTo, today, limit)
+                : policyRepository.findHistoryRows(carId, rangeFrom, rangeTo, today,
+                        limit != null ? limit : Integer.MAX_VALUE);
+
+        // rows are date-ascending with policy starts first within a day, so the policy covering a claim is
+        // the started policy with the latest end date seen so far
+        List<CarHistoryEventDto> events = new ArrayList<>(rows.size());
+        LocalDate coveredUntil = null;
+        String coveringProvider = null;
+        for (CarHistoryRowView row : rows) {
+            switch (row.getEventType()) {
+                case "INSURANCE_POLICY_START" -> {
+                    if (coveredUntil == null || row.getEndDate().isAfter(coveredUntil)) {
+                        coveredUntil = row.getEndDate();
+                        coveringProvider = row.getProvider();
+                    }
+                    if (!row.getEventDate().isBefore(rangeFrom)) {
+                        events.add(new CarHistoryEventDto(row.getEventType(), row.getEventDate(),
+                                "Insurance policy started with " + row.getProvider()
+                                        + " (valid until " + row.getEndDate() + ")",
+                                null, row.getProvider()));
+                    }
                 }
+                case "INSURANCE_POLICY_END" -> events.add(new CarHistoryEventDto(row.getEventType(),
+                        row.getEventDate(), "Insurance policy with " + row.getProvider() + " expired",
+                        null, row.getProvider()));
+                default -> {
+                    boolean covered = coveredUntil != null && !coveredUntil.isBefore(row.getEventDate());
+                    events.add(new CarHistoryEventDto(row.getEventType(), row.getEventDate(),
+                            row.getDescription(), row.getAmount(), covered ? coveringProvider : "Unknown"));
+                }
+            }
+        }
+
+        // most recent day first, keeping starts, then ends, then claims within a day
+        int size = limit != null ? Math.min(limit, events.size()) : events.size();
+        List<CarHistoryEventDto> newestFirst = new ArrayList<>(size);
+        int dayEnd = events.size();
+        while (newestFirst.size() < size) {
+            int dayStart = dayEnd - 1;
+            while (dayStart > 0 && events.get(dayStart - 1).date().equals(events.get(dayEnd - 1).date())) {
+                dayStart--;
+            }
+            for (int i = dayStart; i < dayEnd && newestFirst.size() < size; i++) {
+                newestFirst.add(events.get(i));
+            }
+            dayEnd = dayStart;
+        }
+        return newestFirst;
+    }
+
+    // the rows of findHistoryRows in the same order, with the policy rows built from the index: only claims are queried
+    private List<CarHistoryRowView> indexedHistoryRows(Long carId, LocalDate from, LocalDate to, LocalDate today,
+                                                       Integer limit) {
+        List<CarHistoryRowView> rows = new ArrayList<>(policyRepository.findClaimHistoryRows(carId, from, to,
+                limit != null ? Limit.of(limit) : Limit.unlimited()));
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        long todayDay = today.toEpochDay();
+        for (PolicyStore.StoredPolicy policy : policyIndex.policiesOf(carId)) {
+            LocalDate endDate = LocalDate.ofEpochDay(policy.endDay());
+            if (policy.startDay() <= toDay && policy.endDay() >= fromDay) {
+                rows.add(new IndexedPolicyRow("INSURANCE_POLICY_START", LocalDate.ofEpochDay(policy.startDay()),
+                        endDate, policy.provider()));
             }
+            if (policy.endDay() >= fromDay && policy.endDay() <= toDay && policy.endDay() < todayDay) {
+                rows.add(new IndexedPolicyRow("INSURANCE_POLICY_END", endDate, endDate, policy.provider()));
+            }
+        }
+        // starts, then ends, then claims within a day
+        rows.sort(Comparator.comparing(CarHistoryRowView::getEventDate)
+                .thenComparing(CarHistoryRowView::getEventType, Comparator.reverseOrder()));
+        return rows;
+    }
+
+    private record IndexedPolicyRow(String eventType, LocalDate eventDate, LocalDate endDate, String provider)
+            implements CarHistoryRowView {
+        @Override
+        public String getEventType() {
+            return eventType;
+        }
+
+        @Override
+        public LocalDate getEventDate() {
+            return eventDate;
+        }
+
+        @Override
+        public LocalDate getEndDate() {
+            return endDate;
+        }
 
-            events.add(new CarHistoryEventDto(
-                    "INSURANCE_CLAIM",
-                    claim.getClaimDate(),
-                    claim.getDescription(),
-                    claim.getAmount(),
-                    providerName
-            ));
+        @Override
+        public String getProvider() {
+            return provider;
         }
 
-        events.sort(Comparator.comparing(CarHistoryEventDto::date).reversed());
+        @Override
+        public String getDescription() {
+            return null;
+        }
 
-        return events;
+        @Override
+        public BigDecimal getAmount() {
+            return null;
+        }
+    }
+
+    private boolean isActiveOn(Long carId, LocalDate date) {
+        if (policyIndex.isReady()) {
+            return policyIndex.isActiveOn(carId, date);
+        }
+        return policyRepository.existsActiveOnDate(carId, date);
+    }
+
+    private boolean carExists(Long carId) {
+        if (policyIndex.isReady()) {
+            return policyIndex.containsCar(carId);
+        }
+        return carRepository.existsById(carId);
     }
 }
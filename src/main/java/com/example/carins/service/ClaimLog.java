@@ -0,0 +1,218 @@
+package com.example.carins.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only claim log in memory-mapped segment files named after the first tracking id they hold. A record
+ * is {@code [int length][payload][int crc32c]} with payload {@code [long trackingId][long carId][int epochDay]
+ * [long amountUnscaled][int descriptionBytes][description]}. Mapped pages reach the page cache on every put, so
+ * a process crash loses nothing; {@code force} also flushes each record to disk to survive a power loss.
+ * A length of zero, or a record that does not check out, marks the end of a segment.
+ */
+final class ClaimLog {
+
+    private static final String PREFIX = "claims-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 4;
+    private static final int FIXED_PAYLOAD_BYTES = 8 + 8 + 4 + 8 + 4;
+    private static final int CRC_BYTES = 4;
+
+    record Entry(long trackingId, long carId, LocalDate claimDate, long amountUnscaled, String description) {
+    }
+
+    private record Segment(long firstTrackingId, Path path, MappedByteBuffer buffer) {
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean force;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private Segment head;
+    private int headPosition;
+    private volatile long lastAppended;
+
+    // opens existing segments and finds the end of the last one; ids continue after max(that end, floor)
+    ClaimLog(Path directory, int segmentBytes, boolean force, long floorTrackingId) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.force = force;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(ClaimLog::isSegment).toList()) {
+                long first = Long.parseLong(path.getFileName().toString()
+                        .substring(PREFIX.length(), path.getFileName().toString().length() - SUFFIX.length()));
+                segments.put(first, new Segment(first, path, map(path, Math.max(segmentBytes, (int) Files.size(path)))));
+            }
+        }
+
+        long last = floorTrackingId;
+        if (!segments.isEmpty()) {
+            head = segments.lastEntry().getValue();
+            last = Math.max(last, head.firstTrackingId() - 1);
+            int position = 0;
+            for (Entry entry = read(head.buffer(), position); entry != null; entry = read(head.buffer(), position)) {
+                last = Math.max(last, entry.trackingId());
+                position += storedBytes(head.buffer(), position);
+            }
+            headPosition = position;
+            // clear a torn tail so a later append cannot be mistaken for its continuation
+            if (headPosition + HEADER_BYTES <= head.buffer().capacity()) {
+                head.buffer().putInt(headPosition, 0);
+            }
+        }
+        lastAppended = last;
+    }
+
+    long lastAppended() {
+        return lastAppended;
+    }
+
+    synchronized long append(long carId, LocalDate claimDate, long amountUnscaled, String description) throws IOException {
+        byte[] text = description.getBytes(StandardCharsets.UTF_8);
+        int bytes = recordBytes(text.length);
+        if (bytes + HEADER_BYTES > segmentBytes) {
+            throw new IllegalArgumentException("Claim record of " + bytes + " bytes does not fit a log segment");
+        }
+        long trackingId = lastAppended + 1;
+        if (head == null || headPosition + bytes + HEADER_BYTES > head.buffer().capacity()) {
+            roll(trackingId);
+        }
+
+        MappedByteBuffer buffer = head.buffer();
+        int payload = headPosition + HEADER_BYTES;
+        buffer.putLong(payload, trackingId)
+                .putLong(payload + 8, carId)
+                .putInt(payload + 16, (int) claimDate.toEpochDay())
+                .putLong(payload + 20, amountUnscaled)
+                .putInt(payload + 28, text.length)
+                .put(payload + FIXED_PAYLOAD_BYTES, text);
+        int payloadBytes = FIXED_PAYLOAD_BYTES + text.length;
+        buffer.putInt(payload + payloadBytes, crc(buffer, payload, payloadBytes));
+        // the length goes last: until it is set the record reads as the end of the segment
+        buffer.putInt(headPosition + bytes, 0);
+        buffer.putInt(headPosition, payloadBytes);
+        if (force) {
+            buffer.force(headPosition, bytes + HEADER_BYTES);
+        }
+        headPosition += bytes;
+        lastAppended = trackingId;
+        return trackingId;
+    }
+
+    Reader readerAfter(long trackingId) {
+        return new Reader(trackingId);
+    }
+
+    // drops segments whose records are all at or below the given id; the head segment is always kept
+    void deleteUpTo(long trackingId) throws IOException {
+        for (Map.Entry<Long, Segment> entry : segments.entrySet()) {
+            Map.Entry<Long, Segment> next = segments.higherEntry(entry.getKey());
+            if (next == null || next.getKey() - 1 > trackingId) break;
+            segments.remove(entry.getKey());
+            Files.deleteIfExists(entry.getValue().path());
+        }
+    }
+
+    private void roll(long firstTrackingId) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, firstTrackingId, SUFFIX));
+        head = new Segment(firstTrackingId, path, map(path, segmentBytes));
+        headPosition = 0;
+        segments.put(firstTrackingId, head);
+    }
+
+    final class Reader {
+        private Segment segment;
+        private int position;
+        private long lastRead;
+
+        private Reader(long afterTrackingId) {
+            lastRead = afterTrackingId;
+            Map.Entry<Long, Segment> start = segments.floorEntry(afterTrackingId + 1);
+            if (start == null) start = segments.firstEntry();
+            segment = start == null ? null : start.getValue();
+        }
+
+        // the next records in id order, at most max of them; empty once the reader has caught up
+        List<Entry> next(int max) {
+            List<Entry> entries = new ArrayList<>(Math.min(max, 1024));
+            long readable = lastAppended;
+            while (entries.size() < max && lastRead < readable) {
+                if (segment == null) {
+                    Map.Entry<Long, Segment> first = segments.firstEntry();
+                    if (first == null) break;
+                    segment = first.getValue();
+                    position = 0;
+                }
+                Entry entry = read(segment.buffer(), position);
+                if (entry == null) {
+                    Map.Entry<Long, Segment> next = segments.higherEntry(segment.firstTrackingId());
+                    if (next == null) break;
+                    segment = next.getValue();
+                    position = 0;
+                    continue;
+                }
+                position += storedBytes(segment.buffer(), position);
+                if (entry.trackingId() > lastRead) {
+                    entries.add(entry);
+                    lastRead = entry.trackingId();
+                }
+            }
+            return entries;
+        }
+    }
+
+    private static Entry read(MappedByteBuffer buffer, int position) {
+        if (position + HEADER_BYTES > buffer.capacity()) return null;
+        int payloadBytes = buffer.getInt(position);
+        int payload = position + HEADER_BYTES;
+        if (payloadBytes < FIXED_PAYLOAD_BYTES || payload + payloadBytes + CRC_BYTES > buffer.capacity()) return null;
+        if (buffer.getInt(payload + payloadBytes) != crc(buffer, payload, payloadBytes)) return null;
+
+        byte[] text = new byte[buffer.getInt(payload + 28)];
+        buffer.get(payload + FIXED_PAYLOAD_BYTES, text);
+        return new Entry(buffer.getLong(payload), buffer.getLong(payload + 8),
+                LocalDate.ofEpochDay(buffer.getInt(payload + 16)), buffer.getLong(payload + 20),
+                new String(text, StandardCharsets.UTF_8));
+    }
+
+    private static int storedBytes(MappedByteBuffer buffer, int position) {
+        return HEADER_BYTES + buffer.getInt(position) + CRC_BYTES;
+    }
+
+    private static int recordBytes(int descriptionBytes) {
+        return HEADER_BYTES + FIXED_PAYLOAD_BYTES + descriptionBytes + CRC_BYTES;
+    }
+
+    private static int crc(MappedByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static MappedByteBuffer map(Path path, int bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.carins.service;
+
+import com.example.carins.service.ClaimRollupService.Delta;
+import com.example.carins.service.ClaimRollupService.Dimension;
+import com.example.carins.service.ClaimRollupService.Key;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+public class ClaimRollupReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClaimRollupReconciler.class);
+
+    // claim aggregates minus the stored rollups, in one statement so both sides come from the same snapshot;
+    // only keys that drifted come back. Provider attribution matches ClaimRollupService.
+    private static final String DRIFT =
+            "select dimension, rollup_key, sum(claim_count), sum(amount_total) from (" +
+            "select 'CAR' as dimension, cast(car_id as varchar(20)) as rollup_key, count(*) as claim_count, " +
+            "sum(amount) as amount_total " +
+            "from insuranceclaim group by car_id " +
+            "union all " +
+            "select 'PROVIDER', provider, count(*), sum(amount) " +
+            "from (select coalesce((select p.provider from insurancepolicy p " +
+            "where p.car_id = c.car_id and p.start_date <= c.claim_date and p.end_date >= c.claim_date " +
+            "order by p.end_date desc, p.id desc fetch first 1 row only), '" + ClaimRollupService.UNKNOWN + "') as provider, " +
+            "c.amount as amount from insuranceclaim c) attributed " +
+            "group by provider " +
+            "union all " +
+            "select 'MONTH', to_char(claim_date, 'YYYY-MM'), count(*), sum(amount) " +
+            "from insuranceclaim group by to_char(claim_date, 'YYYY-MM') " +
+            "union all " +
+            "select dimension, rollup_key, -claim_count, -amount_total from claim_rollup" +
+            ") d " +
+            "group by dimension, rollup_key " +
+            "having sum(claim_count) <> 0 or sum(amount_total) <> 0";
+
+    private static final String DELETE_EMPTY =
+            "delete from claim_rollup where claim_count = 0 and amount_total = 0";
+
+    private final ClaimRollupService rollupService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer runTimer;
+    private final DistributionSummary correctionsPerRun;
+
+    public ClaimRollupReconciler(ClaimRollupService rollupService,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.rollupService = rollupService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.runTimer = Timer.builder("carins.claim_rollup.reconcile")
+                .description("Duration of one claim rollup reconciliation run")
+                .register(meterRegistry);
+        this.correctionsPerRun = DistributionSummary.builder("carins.claim_rollup.corrections")
+                .description("Claim rollup rows corrected per reconciliation run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedRate = 60 * 60 * 1000) // 1 hour in milliseconds
+    public void reconcileClaimRollups() {
+        runTimer.record(this::reconcile);
+    }
+
+    // drift is applied as increments, which commute with the increments of claims written meanwhile
+    public int reconcile() {
+        Map<Key, Delta> drift = new TreeMap<>();
+        jdbcTemplate.query(DRIFT, rs -> {
+            drift.put(new Key(Dimension.valueOf(rs.getString(1)), rs.getString(2)),
+                    new Delta(rs.getLong(3), rs.getBigDecimal(4)));
+        });
+        if (!drift.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                rollupService.apply(drift);
+                jdbcTemplate.update(DELETE_EMPTY);
+            });
+            drift.forEach((key, delta) -> logger.warn("Claim rollup {} {} was off by {} claims, {} amount",
+                    key.dimension(), key.value(), delta.claims(), delta.amount()));
+        }
+        correctionsPerRun.record(drift.size());
+        return drift.size();
+    }
+}
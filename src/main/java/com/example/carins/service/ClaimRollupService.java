@@ -0,0 +1,179 @@
+package com.example.carins.service;
+
+import com.example.carins.model.InsuranceClaim;
+import com.example.carins.repo.InsurancePolicyRepository;
+import com.example.carins.repo.PolicyProviderView;
+import com.example.carins.web.dto.ClaimStatsDto;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Claim counts and amount totals per car, per provider and per month, kept in the {@code claim_rollup} table.
+ * Claim writers call {@link #record} in the transaction that saves the claims, so the rollups commit or roll
+ * back with them; reads are primary key lookups or short key-range scans. A claim counts for the provider of
+ * the policy covering its date, the one with the latest end date when several do, and for {@value #UNKNOWN}
+ * when none does. {@link ClaimRollupReconciler} repairs whatever drifts, e.g. after policies are edited.
+ * Being the one place every claim writer passes through with the provider at hand, it also announces the claims
+ * to {@link FleetEventStream}, which publishes them once the transaction commits.
+ */
+@Service
+public class ClaimRollupService {
+
+    public static final String UNKNOWN = "Unknown";
+
+    public enum Dimension {CAR, PROVIDER, MONTH}
+
+    // increments, creating the row on first use; a concurrent first use of the same key fails one of the inserts
+    private static final String ADD =
+            "merge into claim_rollup r " +
+            "using (values (cast(? as varchar(16)), cast(? as varchar(255)), cast(? as bigint), cast(? as numeric(19,2)))) " +
+            "d (dimension, rollup_key, claim_count, amount_total) " +
+            "on r.dimension = d.dimension and r.rollup_key = d.rollup_key " +
+            "when matched then update set claim_count = r.claim_count + d.claim_count, " +
+            "amount_total = r.amount_total + d.amount_total " +
+            "when not matched then insert (dimension, rollup_key, claim_count, amount_total) " +
+            "values (d.dimension, d.rollup_key, d.claim_count, d.amount_total)";
+
+    private static final String FIND =
+            "select rollup_key, claim_count, amount_total from claim_rollup where dimension = ? and rollup_key = ?";
+
+    private static final String LIST =
+            "select rollup_key, claim_count, amount_total from claim_rollup where dimension = ?";
+
+    private final InsurancePolicyRepository policyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ClaimRollupService(InsurancePolicyRepository policyRepository, JdbcTemplate jdbcTemplate,
+                              ApplicationEventPublisher eventPublisher) {
+        this.policyRepository = policyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    record Key(Dimension dimension, String value) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::dimension).thenComparing(Key::value);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    record Delta(long claims, BigDecimal amount) {
+        Delta plus(Delta other) {
+            return new Delta(claims + other.claims, amount.add(other.amount));
+        }
+    }
+
+    // must run in the transaction that saves the claims; one policy query attributes the whole batch
+    public void record(Collection<InsuranceClaim> claims) {
+        if (claims.isEmpty()) return;
+        Set<Long> carIds = new HashSet<>();
+        LocalDate from = LocalDate.MAX;
+        LocalDate to = LocalDate.MIN;
+        for (InsuranceClaim claim : claims) {
+            carIds.add(claim.getCar().getId());
+            if (claim.getClaimDate().isBefore(from)) from = claim.getClaimDate();
+            if (claim.getClaimDate().isAfter(to)) to = claim.getClaimDate();
+        }
+        List<PolicyProviderView> policies = policyRepository.findProvidersOverlapping(carIds, from, to);
+
+        Map<Key, Delta> deltas = new TreeMap<>();
+        List<FleetEvent> events = new ArrayList<>(claims.size());
+        for (InsuranceClaim claim : claims) {
+            Long carId = claim.getCar().getId();
+            String provider = providerOf(policies, carId, claim.getClaimDate());
+            add(deltas, new Key(Dimension.CAR, carId.toString()), claim.getAmount());
+            add(deltas, new Key(Dimension.PROVIDER, provider), claim.getAmount());
+            add(deltas, new Key(Dimension.MONTH, YearMonth.from(claim.getClaimDate()).toString()), claim.getAmount());
+            events.add(FleetEvent.claimCreated(claim, provider));
+        }
+        apply(deltas);
+        eventPublisher.publishEvent(new FleetEvent.Batch(events));
+    }
+
+    public ClaimStatsDto find(Dimension dimension, String key) {
+        return jdbcTemplate.query(FIND, ClaimRollupService::toStats, dimension.name(), key).stream()
+                .findFirst()
+                .orElseGet(() -> ClaimStatsDto.empty(key));
+    }
+
+    // keys between from and to inclusive, in key order; null bounds are open
+    public List<ClaimStatsDto> list(Dimension dimension, String from, String to) {
+        StringBuilder sql = new StringBuilder(LIST);
+        List<Object> args = new ArrayList<>(3);
+        args.add(dimension.name());
+        if (from != null) {
+            sql.append(" and rollup_key >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" and rollup_key <= ?");
+            args.add(to);
+        }
+        sql.append(" order by rollup_key");
+        return jdbcTemplate.query(sql.toString(), ClaimRollupService::toStats, args.toArray());
+    }
+
+    // applies in key order, so concurrent writers lock rollup rows in the same order
+    void apply(Map<Key, Delta> deltas) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<Key, Delta> delta : deltas.entrySet()) {
+            rows.add(new Object[]{delta.getKey().dimension().name(), delta.getKey().value(),
+                    delta.getValue().claims(), delta.getValue().amount()});
+        }
+        try {
+            jdbcTemplate.batchUpdate(ADD, rows);
+        } catch (DuplicateKeyException e) {
+            // another transaction created one of the keys first; the batch ran on past the failure, and
+            // repeating just the failed statements now takes the update branch
+            if (!(e.getCause() instanceof BatchUpdateException batch)) throw e;
+            int[] counts = batch.getUpdateCounts();
+            for (int i = 0; i < rows.size(); i++) {
+                if (i >= counts.length || counts[i] == Statement.EXECUTE_FAILED) {
+                    jdbcTemplate.update(ADD, rows.get(i));
+                }
+            }
+        }
+    }
+
+    private static String providerOf(List<PolicyProviderView> policies, Long carId, LocalDate date) {
+        PolicyProviderView covering = null;
+        for (PolicyProviderView policy : policies) {
+            if (!policy.getCarId().equals(carId)
+                    || date.isBefore(policy.getStartDate()) || date.isAfter(policy.getEndDate())) continue;
+            if (covering == null || policy.getEndDate().isAfter(covering.getEndDate())
+                    || (policy.getEndDate().equals(covering.getEndDate()) && policy.getId() > covering.getId())) {
+                covering = policy;
+            }
+        }
+        return covering == null || covering.getProvider() == null ? UNKNOWN : covering.getProvider();
+    }
+
+    private static void add(Map<Key, Delta> deltas, Key key, BigDecimal amount) {
+        deltas.merge(key, new Delta(1, amount), Delta::plus);
+    }
+
+    private static ClaimStatsDto toStats(ResultSet rs, int row) throws SQLException {
+        return new ClaimStatsDto(rs.getString(1), rs.getLong(2), rs.getBigDecimal(3));
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.carins.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ClaimSubmission(long line, Long carId, LocalDate claimDate, String description, BigDecimal amount) {
+}
@@ -0,0 +1,174 @@
+package com.example.carins.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes rows as a big-endian columnar stream: a header describing the columns, then row groups holding each
+ * column's values contiguously, then a zero row count.
+ * <pre>
+ * header:    int magic "CIEX", short version, UTF dataset, short column count, per column: UTF name, byte type
+ *            (DECIMAL64 is followed by a byte scale)
+ * row group: int rows, then per column: byte hasNulls, [null bitmap of (rows + 7) / 8 bytes, bit set = null],
+ *            values: INT64 and DECIMAL64 rows * long, EPOCH_DAY rows * int, UTF8 rows * int byte lengths + bytes
+ * end:       int 0
+ * </pre>
+ * Null slots still take a value (0 or an empty string), so every column of a group has the same shape.
+ */
+public final class ColumnarWriter {
+
+    public static final int MAGIC = 0x43494558; // "CIEX"
+    public static final short VERSION = 1;
+
+    public enum Type {
+        INT64(1), EPOCH_DAY(2), DECIMAL64(3), UTF8(4);
+
+        public final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+    }
+
+    public record Column(String name, Type type, int scale) {
+        public static Column int64(String name) {
+            return new Column(name, Type.INT64, 0);
+        }
+
+        public static Column epochDay(String name) {
+            return new Column(name, Type.EPOCH_DAY, 0);
+        }
+
+        // unscaled value of a decimal with the given scale, e.g. 850.50 at scale 2 is 85050
+        public static Column decimal64(String name, int scale) {
+            return new Column(name, Type.DECIMAL64, scale);
+        }
+
+        public static Column utf8(String name) {
+            return new Column(name, Type.UTF8, 0);
+        }
+    }
+
+    private final DataOutputStream out;
+    private final List<Column> columns;
+    private final int rowGroupSize;
+    private final long[][] longs;
+    private final int[][] ints;
+    private final ByteArrayOutputStream[] bytes;
+    private final byte[][] nulls;
+    private final boolean[] hasNulls;
+    private int rows;
+    private long totalRows;
+
+    public ColumnarWriter(OutputStream out, String dataset, List<Column> columns, int rowGroupSize) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.columns = List.copyOf(columns);
+        this.rowGroupSize = rowGroupSize;
+        int count = columns.size();
+        this.longs = new long[count][];
+        this.ints = new int[count][];
+        this.bytes = new ByteArrayOutputStream[count];
+        this.nulls = new byte[count][(rowGroupSize + 7) / 8];
+        this.hasNulls = new boolean[count];
+
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeUTF(dataset);
+        this.out.writeShort(count);
+        for (int c = 0; c < count; c++) {
+            Column column = columns.get(c);
+            this.out.writeUTF(column.name());
+            this.out.writeByte(column.type().code);
+            if (column.type() == Type.DECIMAL64) {
+                this.out.writeByte(column.scale());
+            }
+            switch (column.type()) {
+                case INT64, DECIMAL64 -> longs[c] = new long[rowGroupSize];
+                case EPOCH_DAY -> ints[c] = new int[rowGroupSize];
+                case UTF8 -> {
+                    ints[c] = new int[rowGroupSize];
+                    bytes[c] = new ByteArrayOutputStream(rowGroupSize * 32);
+                }
+            }
+        }
+    }
+
+    public void setLong(int column, long value) {
+        longs[column][rows] = value;
+    }
+
+    public void setEpochDay(int column, int value) {
+        ints[column][rows] = value;
+    }
+
+    public void setString(int column, String value) {
+        if (value == null) {
+            setNull(column);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        ints[column][rows] = encoded.length;
+        bytes[column].writeBytes(encoded);
+    }
+
+    public void setNull(int column) {
+        if (longs[column] != null) {
+            longs[column][rows] = 0;
+        } else {
+            ints[column][rows] = 0;
+        }
+        nulls[column][rows >>> 3] |= (byte) (1 << (rows & 7));
+        hasNulls[column] = true;
+    }
+
+    // call once every column of the current row is set
+    public void endRow() throws IOException {
+        rows++;
+        if (rows == rowGroupSize) {
+            flushRowGroup();
+        }
+    }
+
+    // writes the last partial group and the end marker; the underlying stream is left open
+    public long finish() throws IOException {
+        flushRowGroup();
+        out.writeInt(0);
+        out.flush();
+        return totalRows;
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (rows == 0) return;
+        out.writeInt(rows);
+        for (int c = 0; c < columns.size(); c++) {
+            out.writeBoolean(hasNulls[c]);
+            if (hasNulls[c]) {
+                out.write(nulls[c], 0, (rows + 7) / 8);
+                Arrays.fill(nulls[c], (byte) 0);
+                hasNulls[c] = false;
+            }
+            switch (columns.get(c).type()) {
+                case INT64, DECIMAL64 -> {
+                    for (int r = 0; r < rows; r++) out.writeLong(longs[c][r]);
+                }
+                case EPOCH_DAY -> {
+                    for (int r = 0; r < rows; r++) out.writeInt(ints[c][r]);
+                }
+                case UTF8 -> {
+                    for (int r = 0; r < rows; r++) out.writeInt(ints[c][r]);
+                    bytes[c].writeTo(out);
+                    bytes[c].reset();
+                }
+            }
+        }
+        out.flush();
+        totalRows += rows;
+        rows = 0;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.carins.service;
+
+import com.example.carins.web.dto.CoverageGapsDto;
+import com.example.carins.web.dto.UninsuredCarDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Fleet-wide coverage in one pass over the car table. Both queries walk cars in primary key order and probe
+// ix_insurancepolicy_car_dates per car, so H2 streams them without sorting; rows arrive through a forward-only
+// cursor and only the current car is held in memory, whatever the fleet size.
+@Service
+public class CoverageService {
+
+    private static final String UNINSURED_SQL =
+            "select c.id, c.vin from car c " +
+            "where not exists (select 1 from insurancepolicy p " +
+            "where p.car_id = c.id and p.start_date <= ? and p.end_date >= ?)";
+
+    private static final String POLICIES_SQL =
+            "select c.id, c.vin, p.start_date, p.end_date from car c " +
+            "left join insurancepolicy p on p.car_id = c.id and p.start_date <= ? and p.end_date >= ?";
+
+    private final JdbcTemplate cursorTemplate;
+
+    public CoverageService(DataSource dataSource, @Value("${carins.coverage.fetch-size:1000}") int fetchSize) {
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+    }
+
+    @FunctionalInterface
+    public interface RowSink<T> {
+        void accept(T row) throws IOException;
+    }
+
+    // cars without a policy covering the date, in id order; carIds narrows the scan when not empty
+    public void streamUninsured(LocalDate date, Collection<Long> carIds, RowSink<UninsuredCarDto> sink) throws IOException {
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(date), Date.valueOf(date)));
+        query(UNINSURED_SQL + carFilter(" and", carIds, args), args,
+                rs -> sink.accept(new UninsuredCarDto(rs.getLong(1), rs.getString(2))));
+    }
+
+    // cars with at least one uncovered day in [from, to], in id order, with those days as ranges
+    public void streamGaps(LocalDate from, LocalDate to, Collection<Long> carIds, RowSink<CoverageGapsDto> sink)
+            throws IOException {
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(to), Date.valueOf(from)));
+        GapSweep sweep = new GapSweep(from.toEpochDay(), to.toEpochDay(), sink);
+        query(POLICIES_SQL + carFilter(" where", carIds, args), args, rs -> {
+            long carId = rs.getLong(1);
+            if (carId != sweep.carId) {
+                sweep.finishCar();
+                sweep.startCar(carId, rs.getString(2));
+            }
+            LocalDate start = rs.getObject(3, LocalDate.class);
+            if (start != null) {
+                sweep.add(start.toEpochDay(), rs.getObject(4, LocalDate.class).toEpochDay());
+            }
+        });
+        sweep.finishCar();
+    }
+
+    private static String carFilter(String keyword, Collection<Long> carIds, List<Object> args) {
+        if (carIds == null || carIds.isEmpty()) {
+            return " order by c.id";
+        }
+        args.addAll(carIds);
+        return keyword + " c.id in (" + String.join(", ", Collections.nCopies(carIds.size(), "?")) + ") order by c.id";
+    }
+
+    private void query(String sql, List<Object> args, RowHandler handler) throws IOException {
+        try {
+            cursorTemplate.query(sql, rs -> {
+                try {
+                    handler.handle(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args.toArray());
+        } catch (UncheckedIOException e) {
+            // the client went away; surface it as the I/O failure it is
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException, IOException;
+    }
+
+    // the current car's intervals as [start, end] epoch-day pairs; sorted and swept when the next car starts
+    private static final class GapSweep {
+        private final long from;
+        private final long to;
+        private final RowSink<CoverageGapsDto> sink;
+        private long carId = Long.MIN_VALUE;
+        private String vin;
+        private long[] intervals = new long[16];
+        private int size;
+
+        GapSweep(long from, long to, RowSink<CoverageGapsDto> sink) {
+            this.from = from;
+            this.to = to;
+            this.sink = sink;
+        }
+
+        void startCar(long carId, String vin) {
+            this.carId = carId;
+            this.vin = vin;
+            size = 0;
+        }
+
+        void add(long startDay, long endDay) {
+            if (size + 2 > intervals.length) {
+                intervals = Arrays.copyOf(intervals, intervals.length * 2);
+            }
+            intervals[size++] = startDay;
+            intervals[size++] = endDay;
+        }
+
+        void finishCar() throws IOException {
+            if (carId == Long.MIN_VALUE) return;
+            sortByStart();
+            List<CoverageGapsDto.Gap> gaps = new ArrayList<>();
+            long uncoveredFrom = from;
+            for (int i = 0; i < size && uncoveredFrom <= to; i += 2) {
+                if (intervals[i] > uncoveredFrom) {
+                    gaps.add(gap(uncoveredFrom, Math.min(intervals[i] - 1, to)));
+                }
+                uncoveredFrom = Math.max(uncoveredFrom, intervals[i + 1] + 1);
+            }
+            if (uncoveredFrom <= to) {
+                gaps.add(gap(uncoveredFrom, to));
+            }
+            if (!gaps.isEmpty()) {
+                sink.accept(new CoverageGapsDto(carId, vin, gaps));
+            }
+            carId = Long.MIN_VALUE;
+        }
+
+        // insertion sort of the pairs: a car has a handful of policies in any range
+        private void sortByStart() {
+            for (int i = 2; i < size; i += 2) {
+                long start = intervals[i];
+                long end = intervals[i + 1];
+                int j = i - 2;
+                while (j >= 0 && intervals[j] > start) {
+                    intervals[j + 2] = intervals[j];
+                    intervals[j + 3] = intervals[j + 1];
+                    j -= 2;
+                }
+                intervals[j + 2] = start;
+                intervals[j + 3] = end;
+            }
+        }
+
+        private static CoverageGapsDto.Gap gap(long fromDay, long toDay) {
+            return new CoverageGapsDto.Gap(LocalDate.ofEpochDay(fromDay), LocalDate.ofEpochDay(toDay));
+        }
+    }
+}
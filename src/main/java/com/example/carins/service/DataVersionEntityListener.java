@@ -0,0 +1,38 @@
+package com.example.carins.service;
+
+import com.example.carins.model.Car;
+import com.example.carins.model.InsuranceClaim;
+import com.example.carins.model.InsurancePolicy;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import static com.example.carins.service.PolicyIndexEntityListener.afterCommit;
+
+public class DataVersionEntityListener {
+
+    private final ObjectProvider<DataVersions> versions;
+
+    public DataVersionEntityListener(ObjectProvider<DataVersions> versions) {
+        this.versions = versions;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChanged(Object entity) {
+        Long carId = switch (entity) {
+            case Car car -> car.getId();
+            case InsurancePolicy policy -> policy.getCar().getId();
+            case InsuranceClaim claim -> claim.getCar().getId();
+            // owners appear in every car listing but in no history
+            default -> null;
+        };
+        if (carId == null) {
+            afterCommit(() -> versions.getObject().fleetChanged());
+        } else {
+            afterCommit(() -> versions.getObject().carChanged(carId));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.carins.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counters behind the ETags of the read endpoints: a fleet version, bumped by every car, owner, policy
+ * and claim write, and a per-car version, set to the fleet version whenever one of the car's own rows changes.
+ * The entity listener bumps them after commit, so callers must take the tag <em>before</em> reading the data:
+ * a response can then only be newer than its tag, never older, and a stale tag always misses.
+ * <p>
+ * Versions live in memory and start over with the process; the boot time in every tag keeps a restarted or
+ * different instance from matching tags it never issued. Rows written behind JPA's back (plain SQL) do not bump
+ * anything.
+ */
+@Component
+public class DataVersions {
+
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong fleetVersion = new AtomicLong();
+    // only cars written since startup; any other car is still at version 0
+    private final ConcurrentHashMap<Long, Long> carVersions = new ConcurrentHashMap<>();
+
+    public long fleetVersion() {
+        return fleetVersion.get();
+    }
+
+    public long carVersion(long carId) {
+        return carVersions.getOrDefault(carId, 0L);
+    }
+
+    public String fleetTag() {
+        return '"' + instance + "-f" + fleetVersion() + '"';
+    }
+
+    // history ends policies relative to today, so the day is part of the tag
+    public String carTag(long carId, LocalDate today) {
+        return '"' + instance + "-c" + carId + "-" + carVersion(carId) + "-" + today.toEpochDay() + '"';
+    }
+
+    void carChanged(long carId) {
+        long version = fleetVersion.incrementAndGet();
+        carVersions.merge(carId, version, Math::max);
+    }
+
+    void fleetChanged() {
+        fleetVersion.incrementAndGet();
+    }
+}
@@ -1,16 +1,27 @@
 package com.example.carins.service;
 
-import com.example.carins.model.InsurancePolicy;
-import com.example.carins.model.ExpiredPolicyLogger;
-import com.example.carins.repo.ExpiredPolicyLoggerRepository;
+import com.example.carins.config.ReplicaRoutingDataSource;
+import com.example.carins.model.SchedulerWatermark;
 import com.example.carins.repo.InsurancePolicyRepository;
+import com.example.carins.repo.PolicyProviderView;
+import com.example.carins.repo.SchedulerWatermarkRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -18,32 +29,105 @@ public class ExpiredPolicyScheduler {
 
     private static final Logger logger = LoggerFactory.getLogger(ExpiredPolicyScheduler.class);
 
+    public static final String WATERMARK = "expired-policies";
+
+    private static final String INSERT_IF_ABSENT =
+            "insert into expired_policy_logger (policy_id, logged_at) " +
+            "select ?, ? where not exists (select 1 from expired_policy_logger where policy_id = ?)";
+
     private final InsurancePolicyRepository policyRepository;
-    private final ExpiredPolicyLoggerRepository loggedPolicyRepository;
+    private final SchedulerWatermarkRepository watermarkRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final int initialLookbackDays;
+    private final Timer runTimer;
+    private final DistributionSummary rowsPerRun;
 
     public ExpiredPolicyScheduler(InsurancePolicyRepository policyRepository,
-                                  ExpiredPolicyLoggerRepository loggedPolicyRepository) {
+                                  SchedulerWatermarkRepository watermarkRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${carins.expired-policies.chunk-size:500}") int chunkSize,
+                                  @Value("${carins.expired-policies.initial-lookback-days:1}") int initialLookbackDays) {
         this.policyRepository = policyRepository;
-        this.loggedPolicyRepository = loggedPolicyRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.initialLookbackDays = initialLookbackDays;
+        this.runTimer = Timer.builder("carins.expired_policies.run")
+                .description("Duration of one expired-policy logging run")
+                .register(meterRegistry);
+        this.rowsPerRun = DistributionSummary.builder("carins.expired_policies.rows")
+                .description("Expired policies newly logged per run")
+                .register(meterRegistry);
     }
 
+    // on the primary throughout: the watermark moves past whatever the run reads, so a policy a lagging replica
+    // did not show yet would never be logged
     @Scheduled(fixedRate = 30 * 60 * 1000) // 30 minutes in milliseconds
-    @Transactional
     public void logExpiredPolicies() {
-        LocalDate today = LocalDate.now();
-        LocalDate yesterday = today.minusDays(1);
+        try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+            runTimer.record(this::catchUp);
+        }
+    }
+
+    // logs every policy whose end date lies after the watermark and up to yesterday, then moves the
+    // watermark to yesterday; a crash before that just replays the window, which the insert-if-absent absorbs
+    private void catchUp() {
+        LocalDate upTo = LocalDate.now().minusDays(1);
+        LocalDate after = watermarkRepository.findById(WATERMARK)
+                .map(SchedulerWatermark::getLastProcessedDate)
+                .orElse(upTo.minusDays(initialLookbackDays));
+        if (!after.isBefore(upTo)) {
+            return;
+        }
 
-        List<InsurancePolicy> expiredPolicies = policyRepository.findPoliciesExpiringOnDate(yesterday);
+        long logged = 0;
+        LocalDate afterEndDate = after;
+        long afterId = 0;
+        List<PolicyProviderView> chunk;
+        do {
+            chunk = policyRepository.findExpiredBetween(after, upTo, afterEndDate, afterId, Limit.of(chunkSize));
+            if (chunk.isEmpty()) break;
+            logged += logChunk(chunk);
+            PolicyProviderView last = chunk.get(chunk.size() - 1);
+            afterEndDate = last.getEndDate();
+            afterId = last.getId();
+        } while (chunk.size() == chunkSize);
 
-        for (InsurancePolicy policy : expiredPolicies) {
-            if (!loggedPolicyRepository.existsByPolicyId(policy.getId())) {
+        watermarkRepository.save(new SchedulerWatermark(WATERMARK, upTo));
+        rowsPerRun.record(logged);
+        logger.debug("Expired policies logged for ({}, {}]: {}", after, upTo, logged);
+    }
+
+    private int logChunk(List<PolicyProviderView> chunk) {
+        LocalDateTime loggedAt = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(chunk.size());
+        for (PolicyProviderView policy : chunk) {
+            rows.add(new Object[]{policy.getId(), loggedAt, policy.getId()});
+        }
+
+        int[] inserted = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_IF_ABSENT, rows));
+
+        // committed by now, so the events go straight out to subscribers
+        List<FleetEvent> events = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] != 0) {
+                PolicyProviderView policy = chunk.get(i);
                 logger.info("Policy {} for car {} expired on {}",
                         policy.getId(),
-                        policy.getCar().getId(),
+                        policy.getCarId(),
                         policy.getEndDate());
-
-                loggedPolicyRepository.save(new ExpiredPolicyLogger(policy.getId()));
+                events.add(FleetEvent.policyExpired(policy));
             }
         }
+        eventPublisher.publishEvent(new FleetEvent.Batch(events));
+        return events.size();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package com.example.carins.service;
+
+import com.example.carins.service.ColumnarWriter.Column;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+// Full-table exports for analytics. Rows are read through one forward-only JDBC cursor with a fetch size (H2
+// spills results beyond MAX_MEMORY_ROWS to disk) and written out a row group at a time, so memory stays at one
+// group whatever the table size.
+@Service
+public class ExportService {
+
+    public static final int AMOUNT_SCALE = 2;
+
+    private static final List<Column> CLAIM_COLUMNS = List.of(
+            Column.int64("id"),
+            Column.int64("car_id"),
+            Column.epochDay("claim_date"),
+            Column.decimal64("amount", AMOUNT_SCALE),
+            Column.utf8("description"));
+
+    private static final List<Column> POLICY_COLUMNS = List.of(
+            Column.int64("id"),
+            Column.int64("car_id"),
+            Column.utf8("provider"),
+            Column.epochDay("start_date"),
+            Column.epochDay("end_date"));
+
+    // amount is numeric(10,2): scaling in SQL hands back a plain long instead of a BigDecimal per row
+    private static final String CLAIMS_SQL =
+            "select id, car_id, claim_date, cast(amount * 100 as bigint) as amount_unscaled, description " +
+            "from insuranceclaim order by id";
+
+    private static final String POLICIES_SQL =
+            "select id, car_id, provider, start_date, end_date from insurancepolicy order by id";
+
+    private final JdbcTemplate cursorTemplate;
+    private final int rowGroupSize;
+
+    public ExportService(DataSource dataSource,
+                         @Value("${carins.export.fetch-size:1000}") int fetchSize,
+                         @Value("${carins.export.row-group-size:8192}") int rowGroupSize) {
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    public long exportClaims(OutputStream out) throws IOException {
+        ColumnarWriter writer = new ColumnarWriter(out, "insuranceclaim", CLAIM_COLUMNS, rowGroupSize);
+        query(CLAIMS_SQL, rs -> {
+            writer.setLong(0, rs.getLong(1));
+            writer.setLong(1, rs.getLong(2));
+            writer.setEpochDay(2, epochDay(rs, 3));
+            writer.setLong(3, rs.getLong(4));
+            writer.setString(4, rs.getString(5));
+            writer.endRow();
+        });
+        return writer.finish();
+    }
+
+    public long exportPolicies(OutputStream out) throws IOException {
+        ColumnarWriter writer = new ColumnarWriter(out, "insurancepolicy", POLICY_COLUMNS, rowGroupSize);
+        query(POLICIES_SQL, rs -> {
+            writer.setLong(0, rs.getLong(1));
+            writer.setLong(1, rs.getLong(2));
+            writer.setString(2, rs.getString(3));
+            LocalDate startDate = rs.getObject(4, LocalDate.class);
+            if (startDate == null) {
+                writer.setNull(3);
+            } else {
+                writer.setEpochDay(3, (int) startDate.toEpochDay());
+            }
+            writer.setEpochDay(4, epochDay(rs, 5));
+            writer.endRow();
+        });
+        return writer.finish();
+    }
+
+    private void query(String sql, RowWriter rowWriter) throws IOException {
+        try {
+            cursorTemplate.query(sql, rs -> {
+                try {
+                    rowWriter.write(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // the client went away; surface it as the I/O failure it is
+            throw e.getCause();
+        }
+    }
+
+    private static int epochDay(ResultSet rs, int column) throws SQLException {
+        return (int) rs.getObject(column, LocalDate.class).toEpochDay();
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
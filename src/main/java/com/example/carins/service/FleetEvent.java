@@ -0,0 +1,31 @@
+package com.example.carins.service;
+
+import com.example.carins.model.InsuranceClaim;
+import com.example.carins.repo.PolicyProviderView;
+import com.example.carins.web.dto.ClaimCreatedEventDto;
+import com.example.carins.web.dto.PolicyExpiredEventDto;
+
+import java.util.List;
+
+// A change pushed to event stream subscribers: data is the payload they receive, carId and provider drive the filters
+public record FleetEvent(String type, long carId, String provider, Object data) {
+
+    public static final String CLAIM_CREATED = "claim-created";
+    public static final String POLICY_EXPIRED = "policy-expired";
+
+    // published as an application event by the writers; FleetEventStream picks it up once the rows have committed
+    public record Batch(List<FleetEvent> events) {
+    }
+
+    static FleetEvent claimCreated(InsuranceClaim claim, String provider) {
+        long carId = claim.getCar().getId();
+        return new FleetEvent(CLAIM_CREATED, carId, provider, new ClaimCreatedEventDto(claim.getId(), carId, provider,
+                claim.getClaimDate(), claim.getAmount(), claim.getDescription()));
+    }
+
+    static FleetEvent policyExpired(PolicyProviderView policy) {
+        String provider = policy.getProvider() != null ? policy.getProvider() : ClaimRollupService.UNKNOWN;
+        return new FleetEvent(POLICY_EXPIRED, policy.getCarId(), provider,
+                new PolicyExpiredEventDto(policy.getId(), policy.getCarId(), provider, policy.getEndDate()));
+    }
+}
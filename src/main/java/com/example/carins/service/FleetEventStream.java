@@ -0,0 +1,265 @@
+package com.example.carins.service;
+
+import com.example.carins.exception.SubscriberLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Claim creations and policy expirations for push subscribers. Committed events get consecutive sequence numbers
+ * and go into one ring of the last {@code carins.events.retained} events, shared by every subscriber: a
+ * subscription is only a cursor into the ring, delivered on its own virtual thread, so memory does not grow with
+ * subscribers or with how far behind they are.
+ * <p>
+ * A subscriber may fall at most {@code buffer} events behind the newest one. Past that, {@link Overflow#DROP}
+ * skips to the newest {@code buffer} events and reports the skipped range as a gap, while
+ * {@link Overflow#DISCONNECT} closes the subscription so the client can reconnect and resume from its last
+ * sequence number. Resuming from a number the ring no longer holds also starts with a gap. Sequence numbers
+ * start from the boot time in microseconds, so they keep increasing across restarts and a number from before
+ * a restart reads as a gap rather than as a position in the new ring.
+ */
+@Service
+public class FleetEventStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetEventStream.class);
+
+    private static final int DELIVERY_BATCH = 256;
+
+    public enum Overflow {DROP, DISCONNECT}
+
+    // receives one subscription's events, always from a single thread at a time
+    public interface Sink {
+        void event(long seq, FleetEvent event) throws IOException;
+
+        // events after 'after' up to and including 'upTo' were not delivered
+        void gap(long after, long upTo) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        // the subscription overflowed under Overflow.DISCONNECT or the stream is shutting down
+        void close();
+    }
+
+    // empty sets match everything; providers are compared case-insensitively
+    public record Filter(Set<Long> carIds, Set<String> providers) {
+        public Filter {
+            carIds = carIds == null ? Set.of() : Set.copyOf(carIds);
+            providers = providers == null ? Set.of()
+                    : providers.stream().map(p -> p.toLowerCase(Locale.ROOT)).collect(Collectors.toUnmodifiableSet());
+        }
+
+        boolean matches(FleetEvent event) {
+            return (carIds.isEmpty() || carIds.contains(event.carId()))
+                    && (providers.isEmpty() || providers.contains(event.provider().toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    private final FleetEvent[] ring;
+    private final long firstSeq = System.currentTimeMillis() * 1000;
+    private volatile long lastSeq = firstSeq - 1;     // written under the ring's lock
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final int maxSubscribers;
+    private final ExecutorService delivery =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fleet-events-", 0).factory());
+    private final Counter dropped;
+    private final Counter disconnected;
+
+    public FleetEventStream(MeterRegistry meterRegistry,
+                            @Value("${carins.events.retained:10000}") int retained,
+                            @Value("${carins.events.max-subscribers:1000}") int maxSubscribers) {
+        this.ring = new FleetEvent[retained];
+        this.maxSubscribers = maxSubscribers;
+        this.dropped = Counter.builder("carins.events.dropped")
+                .description("Events skipped for subscribers that fell too far behind")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("carins.events.disconnected")
+                .description("Subscriptions closed because they fell too far behind")
+                .register(meterRegistry);
+        Gauge.builder("carins.events.subscribers", subscriptions, Set::size)
+                .description("Open event stream subscriptions")
+                .register(meterRegistry);
+    }
+
+    public int retained() {
+        return ring.length;
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    // starts delivering events after 'after', or only new ones when it is null
+    public Subscription subscribe(Filter filter, Long after, Overflow overflow, int buffer, Sink sink) {
+        if (buffer < 1 || buffer > ring.length) {
+            throw new IllegalArgumentException("Buffer must be between 1 and " + ring.length);
+        }
+        Subscription subscription;
+        synchronized (subscriptions) {
+            if (subscriptions.size() >= maxSubscribers) {
+                throw new SubscriberLimitException(maxSubscribers);
+            }
+            // a number beyond the newest was never issued by this process: treat it like no number at all
+            long newest = lastSeq;
+            subscription = new Subscription(filter, after != null ? Math.min(after, newest) : newest, overflow, buffer, sink);
+            subscriptions.add(subscription);
+        }
+        subscription.signal();
+        return subscription;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEvents(FleetEvent.Batch batch) {
+        if (batch.events().isEmpty()) return;
+        synchronized (ring) {
+            for (FleetEvent event : batch.events()) {
+                ring[slot(lastSeq + 1)] = event;
+                lastSeq++;
+            }
+        }
+        subscriptions.forEach(Subscription::signal);
+    }
+
+    // keeps idle connections from being closed by proxies and finds subscribers that went away
+    @Scheduled(fixedRateString = "${carins.events.heartbeat-millis:15000}")
+    public void heartbeat() {
+        for (Subscription subscription : subscriptions) {
+            subscription.heartbeatDue = true;
+            subscription.signal();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        subscriptions.forEach(subscription -> {
+            subscription.cancel();
+            subscription.sink.close();
+        });
+        delivery.shutdownNow();
+    }
+
+    private int slot(long seq) {
+        return (int) ((seq - firstSeq) % ring.length);
+    }
+
+    // events after 'after' into 'into', at most max of them; returns the oldest sequence number still retained
+    private long read(long after, int max, List<FleetEvent> into) {
+        synchronized (ring) {
+            long oldest = Math.max(firstSeq, lastSeq - ring.length + 1);
+            for (long seq = Math.max(after + 1, oldest); seq <= lastSeq && into.size() < max; seq++) {
+                into.add(ring[slot(seq)]);
+            }
+            return oldest;
+        }
+    }
+
+    public final class Subscription {
+        private final Filter filter;
+        private final Overflow overflow;
+        private final int buffer;
+        private final Sink sink;
+        // wake-ups since the delivery thread last looked; only the thread that takes it from 0 starts delivering
+        private final AtomicInteger wakeUps = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean heartbeatDue;
+        private long cursor;     // last sequence number handled, touched by the delivery thread only
+
+        private Subscription(Filter filter, long after, Overflow overflow, int buffer, Sink sink) {
+            this.filter = filter;
+            this.cursor = after;
+            this.overflow = overflow;
+            this.buffer = buffer;
+            this.sink = sink;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void signal() {
+            if (!cancelled && wakeUps.getAndIncrement() == 0) {
+                delivery.execute(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            int seen = 1;
+            try {
+                do {
+                    deliverAvailable();
+                    seen = wakeUps.addAndGet(-seen);
+                } while (seen != 0 && !cancelled);
+            } catch (IOException | RuntimeException e) {
+                // the client went away or the sink failed; either way the subscription is over
+                logger.debug("Event subscriber removed: {}", e.toString());
+                cancel();
+                sink.close();
+            }
+        }
+
+        private void deliverAvailable() throws IOException {
+            List<FleetEvent> events = new ArrayList<>(DELIVERY_BATCH);
+            boolean sent = false;
+            while (!cancelled) {
+                long newest = lastSeq;
+                if (newest - cursor > buffer) {
+                    if (overflow == Overflow.DISCONNECT) {
+                        disconnected.increment();
+                        cancel();
+                        sink.close();
+                        return;
+                    }
+                    skipTo(newest - buffer);
+                    sent = true;
+                }
+                events.clear();
+                long oldest = read(cursor, DELIVERY_BATCH, events);
+                if (oldest - 1 > cursor) {
+                    // resumed from a number the ring no longer holds
+                    skipTo(oldest - 1);
+                    sent = true;
+                }
+                if (events.isEmpty()) break;
+                for (FleetEvent event : events) {
+                    // fell behind while sending the batch: re-check from the top before sending more
+                    if (lastSeq - cursor > buffer) break;
+                    cursor++;
+                    if (filter.matches(event)) {
+                        sink.event(cursor, event);
+                        sent = true;
+                    }
+                }
+            }
+            if (heartbeatDue && !cancelled) {
+                heartbeatDue = false;
+                if (!sent) sink.heartbeat();
+            }
+        }
+
+        private void skipTo(long seq) throws IOException {
+            dropped.increment(seq - cursor);
+            sink.gap(cursor, seq);
+            cursor = seq;
+        }
+    }
+}
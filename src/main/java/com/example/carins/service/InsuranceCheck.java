@@ -0,0 +1,6 @@
+package com.example.carins.service;
+
+import java.time.LocalDate;
+
+public record InsuranceCheck(Long carId, LocalDate date) {
+}
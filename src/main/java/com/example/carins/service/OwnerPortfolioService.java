@@ -0,0 +1,90 @@
+package com.example.carins.service;
+
+import com.example.carins.exception.OwnerNotFoundException;
+import com.example.carins.model.Owner;
+import com.example.carins.repo.CarRepository;
+import com.example.carins.repo.ClaimView;
+import com.example.carins.repo.InsuranceClaimRepository;
+import com.example.carins.repo.InsurancePolicyRepository;
+import com.example.carins.repo.OwnerCarView;
+import com.example.carins.repo.OwnerRepository;
+import com.example.carins.repo.PolicyProviderView;
+import com.example.carins.web.dto.OwnerPortfolioDto;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An owner's portfolio, a page of cars at a time, in a fixed number of queries whatever the page size: the
+ * owner (usually from the second-level cache), the page of cars through ix_car_owner, then the active policies
+ * and the recent claims of all those cars with one {@code in} query each. All three are projections, so no
+ * entity is loaded and nothing is fetched lazily per car.
+ */
+@Service
+public class OwnerPortfolioService {
+
+    // lastCarId is the keyset for the next page, null on the last one
+    public record Page(OwnerPortfolioDto portfolio, Long lastCarId) {
+    }
+
+    private final OwnerRepository ownerRepository;
+    private final CarRepository carRepository;
+    private final InsurancePolicyRepository policyRepository;
+    private final InsuranceClaimRepository claimRepository;
+
+    public OwnerPortfolioService(OwnerRepository ownerRepository, CarRepository carRepository,
+                                 InsurancePolicyRepository policyRepository, InsuranceClaimRepository claimRepository) {
+        this.ownerRepository = ownerRepository;
+        this.carRepository = carRepository;
+        this.policyRepository = policyRepository;
+        this.claimRepository = claimRepository;
+    }
+
+    // cars after afterCarId, at most limit of them; one read-only transaction so the page is a single snapshot
+    @Transactional(readOnly = true)
+    public Page getPortfolio(long ownerId, long afterCarId, int limit, LocalDate activeOn, LocalDate claimsSince) {
+        Owner owner = ownerRepository.findById(ownerId).orElseThrow(() -> new OwnerNotFoundException(ownerId));
+        List<OwnerCarView> cars = carRepository.findOwnerCarsAfter(ownerId, afterCarId, Limit.of(limit + 1));
+        boolean more = cars.size() > limit;
+        if (more) {
+            cars = cars.subList(0, limit);
+        }
+
+        Map<Long, List<OwnerPortfolioDto.ActivePolicy>> policies = new HashMap<>();
+        Map<Long, List<OwnerPortfolioDto.RecentClaim>> claims = new HashMap<>();
+        if (!cars.isEmpty()) {
+            List<Long> carIds = cars.stream().map(OwnerCarView::getId).toList();
+            List<PolicyProviderView> active = new ArrayList<>(
+                    policyRepository.findProvidersOverlapping(carIds, activeOn, activeOn));
+            active.sort(Comparator.comparing(PolicyProviderView::getStartDate)
+                    .thenComparing(PolicyProviderView::getId));
+            for (PolicyProviderView policy : active) {
+                policies.computeIfAbsent(policy.getCarId(), id -> new ArrayList<>())
+                        .add(new OwnerPortfolioDto.ActivePolicy(policy.getId(), policy.getProvider(),
+                                policy.getStartDate(), policy.getEndDate()));
+            }
+            for (ClaimView claim : claimRepository.findRecentByCarIds(carIds, claimsSince)) {
+                claims.computeIfAbsent(claim.getCarId(), id -> new ArrayList<>())
+                        .add(new OwnerPortfolioDto.RecentClaim(claim.getId(), claim.getClaimDate(),
+                                claim.getDescription(), claim.getAmount()));
+            }
+        }
+
+        List<OwnerPortfolioDto.PortfolioCar> portfolioCars = new ArrayList<>(cars.size());
+        for (OwnerCarView car : cars) {
+            portfolioCars.add(new OwnerPortfolioDto.PortfolioCar(car.getId(), car.getVin(), car.getMake(),
+                    car.getModel(), car.getYearOfManufacture(),
+                    policies.getOrDefault(car.getId(), List.of()), claims.getOrDefault(car.getId(), List.of())));
+        }
+        OwnerPortfolioDto portfolio = new OwnerPortfolioDto(owner.getId(), owner.getName(), owner.getEmail(),
+                activeOn, claimsSince, portfolioCars);
+        return new Page(portfolio, more ? cars.get(cars.size() - 1).getId() : null);
+    }
+}
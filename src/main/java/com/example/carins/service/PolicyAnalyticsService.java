@@ -0,0 +1,246 @@
+package com.example.carins.service;
+
+import com.example.carins.repo.CarRepository;
+import com.example.carins.web.dto.PolicyAnalyticsDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fleet-wide policy analytics in one parallel pass. Fork-join tasks halve the car id range down to
+ * {@code carins.analytics.cars-per-task} ids; each leaf reads its range's policies with a query of its own, so on
+ * its own pooled connection, in car and start order through ix_insurancepolicy_car_dates, and folds them into a
+ * {@link Partial}. A range never splits a car, so overlaps and gaps are complete within a leaf and the parents
+ * only add partials up.
+ * <p>
+ * Parallelism defaults to the core count, capped at half the connection pool so requests keep the other half.
+ * Leaves read separate snapshots: a policy written during a run is counted or not depending on its range, but
+ * every car is seen consistently. A run requested while one is in progress joins it.
+ */
+@Service
+public class PolicyAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PolicyAnalyticsService.class);
+
+    private static final String POLICIES_SQL =
+            "select car_id, provider, start_date, end_date from insurancepolicy " +
+            "where car_id between ? and ? and start_date is not null " +
+            "order by car_id, start_date";
+
+    private final CarRepository carRepository;
+    private final JdbcTemplate cursorTemplate;
+    private final ForkJoinPool pool;
+    private final long carsPerTask;
+    private final Timer runTimer;
+    private final AtomicReference<CompletableFuture<PolicyAnalyticsDto>> running = new AtomicReference<>();
+    private volatile PolicyAnalyticsDto latest;
+
+    public PolicyAnalyticsService(CarRepository carRepository,
+                                  DataSource dataSource,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${carins.analytics.parallelism:0}") int parallelism,
+                                  @Value("${carins.analytics.cars-per-task:10000}") long carsPerTask,
+                                  @Value("${carins.analytics.fetch-size:1000}") int fetchSize,
+                                  @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize) {
+        this.carRepository = carRepository;
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(Math.max(1, Math.min(threads, connectionPoolSize / 2)));
+        this.carsPerTask = Math.max(1, carsPerTask);
+        this.runTimer = Timer.builder("carins.analytics.run")
+                .description("Duration of one fleet-wide policy analytics pass")
+                .register(meterRegistry);
+    }
+
+    // the last result, running the pass first when there is none yet
+    public PolicyAnalyticsDto latestOrRun() {
+        PolicyAnalyticsDto result = latest;
+        return result != null ? result : run();
+    }
+
+    @Scheduled(cron = "${carins.analytics.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        PolicyAnalyticsDto result = run();
+        logger.info("Policy analytics over {} cars and {} policies in {} partitions took {} ms",
+                result.cars(), result.policies(), result.partitions(), result.elapsedMillis());
+    }
+
+    public PolicyAnalyticsDto run() {
+        CompletableFuture<PolicyAnalyticsDto> mine = new CompletableFuture<>();
+        CompletableFuture<PolicyAnalyticsDto> inProgress = running.compareAndExchange(null, mine);
+        if (inProgress != null) {
+            try {
+                return inProgress.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            PolicyAnalyticsDto result = runTimer.record(this::compute);
+            latest = result;
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.set(null);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private PolicyAnalyticsDto compute() {
+        long started = System.nanoTime();
+        Partial total = pool.invoke(new RangeTask(carRepository.findMinId(), carRepository.findMaxId()));
+        return total.toDto((System.nanoTime() - started) / 1_000_000, pool.getParallelism());
+    }
+
+    private Partial scan(long fromCarId, long toCarId) {
+        Partial partial = new Partial();
+        cursorTemplate.query(POLICIES_SQL, rs -> {
+            partial.add(rs.getLong(1), rs.getString(2),
+                    rs.getObject(3, LocalDate.class).toEpochDay(), rs.getObject(4, LocalDate.class).toEpochDay());
+        }, fromCarId, toCarId);
+        partial.finishCar();
+        return partial;
+    }
+
+    // car ids fromCarId..toCarId, inclusive
+    private final class RangeTask extends RecursiveTask<Partial> {
+        private final long fromCarId;
+        private final long toCarId;
+
+        RangeTask(long fromCarId, long toCarId) {
+            this.fromCarId = fromCarId;
+            this.toCarId = toCarId;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (toCarId - fromCarId < carsPerTask) {
+                return scan(fromCarId, toCarId);
+            }
+            long middle = fromCarId + (toCarId - fromCarId) / 2;
+            RangeTask lower = new RangeTask(fromCarId, middle);
+            lower.fork();
+            Partial upper = new RangeTask(middle + 1, toCarId).compute();
+            return upper.merge(lower.join());
+        }
+    }
+
+    // figures for a set of whole cars, fed one car at a time in start order
+    private static final class Partial {
+        private final Map<String, long[]> byProvider = new TreeMap<>();   // provider -> [policies, days]
+        private int partitions = 1;
+        private long cars;
+        private long policies;
+        private long overlapCars;
+        private long overlapPairs;
+        private long renewals;
+        private long gaps;
+        private long gapDays;
+        private long maxGapDays;
+
+        private long carId = Long.MIN_VALUE;
+        private long[] ends = new long[8];     // the current car's end days so far
+        private int size;
+        private long maxEnd;
+        private boolean overlapping;
+
+        void add(long carId, String provider, long startDay, long endDay) {
+            if (carId != this.carId) {
+                finishCar();
+                this.carId = carId;
+                cars++;
+            }
+            policies++;
+            long[] totals = byProvider.computeIfAbsent(provider != null ? provider : ClaimRollupService.UNKNOWN,
+                    p -> new long[2]);
+            totals[0]++;
+            totals[1] += endDay - startDay + 1;
+
+            if (size > 0) {
+                if (startDay <= maxEnd) {
+                    // every earlier policy started on or before this one, so it overlaps when it ends later
+                    for (int i = 0; i < size; i++) {
+                        if (ends[i] >= startDay) overlapPairs++;
+                    }
+                    overlapping = true;
+                } else if (startDay == maxEnd + 1) {
+                    renewals++;
+                } else {
+                    long gap = startDay - maxEnd - 1;
+                    gaps++;
+                    gapDays += gap;
+                    maxGapDays = Math.max(maxGapDays, gap);
+                }
+            }
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            ends[size++] = endDay;
+            maxEnd = size == 1 ? endDay : Math.max(maxEnd, endDay);
+        }
+
+        void finishCar() {
+            if (overlapping) overlapCars++;
+            carId = Long.MIN_VALUE;
+            size = 0;
+            overlapping = false;
+        }
+
+        // both sides must be finished
+        Partial merge(Partial other) {
+            other.byProvider.forEach((provider, totals) -> {
+                long[] mine = byProvider.computeIfAbsent(provider, p -> new long[2]);
+                mine[0] += totals[0];
+                mine[1] += totals[1];
+            });
+            partitions += other.partitions;
+            cars += other.cars;
+            policies += other.policies;
+            overlapCars += other.overlapCars;
+            overlapPairs += other.overlapPairs;
+            renewals += other.renewals;
+            gaps += other.gaps;
+            gapDays += other.gapDays;
+            maxGapDays = Math.max(maxGapDays, other.maxGapDays);
+            return this;
+        }
+
+        PolicyAnalyticsDto toDto(long elapsedMillis, int parallelism) {
+            List<PolicyAnalyticsDto.ProviderDuration> providers = new ArrayList<>(byProvider.size());
+            byProvider.forEach((provider, totals) -> providers.add(
+                    new PolicyAnalyticsDto.ProviderDuration(provider, totals[0], (double) totals[1] / totals[0])));
+            return new PolicyAnalyticsDto(Instant.now(), elapsedMillis, partitions, parallelism, cars, policies,
+                    providers, new PolicyAnalyticsDto.Overlaps(overlapCars, overlapPairs),
+                    new PolicyAnalyticsDto.RenewalGaps(renewals, gaps, gaps == 0 ? 0 : (double) gapDays / gaps,
+                            maxGapDays));
+        }
+    }
+}
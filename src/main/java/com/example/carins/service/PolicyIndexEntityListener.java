@@ -0,0 +1,63 @@
+package com.example.carins.service;
+
+import com.example.carins.model.Car;
+import com.example.carins.model.InsurancePolicy;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+
+public class PolicyIndexEntityListener {
+
+    // resolved lazily: the index depends on repositories, which are built after this listener
+    private final ObjectProvider<PolicyIntervalIndex> index;
+
+    public PolicyIndexEntityListener(ObjectProvider<PolicyIntervalIndex> index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Object entity) {
+        if (entity instanceof InsurancePolicy policy) {
+            long carId = policy.getCar().getId();
+            long policyId = policy.getId();
+            LocalDate startDate = policy.getStartDate();
+            LocalDate endDate = policy.getEndDate();
+            String provider = policy.getProvider();
+            afterCommit(() -> index.getObject().upsertPolicy(carId, policyId, startDate, endDate, provider));
+        } else if (entity instanceof Car car) {
+            long carId = car.getId();
+            afterCommit(() -> index.getObject().addCar(carId));
+        }
+    }
+
+    @PostRemove
+    public void onRemoved(Object entity) {
+        if (entity instanceof InsurancePolicy policy) {
+            long carId = policy.getCar().getId();
+            long policyId = policy.getId();
+            afterCommit(() -> index.getObject().removePolicy(carId, policyId));
+        } else if (entity instanceof Car car) {
+            long carId = car.getId();
+            afterCommit(() -> index.getObject().removeCar(carId));
+        }
+    }
+
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
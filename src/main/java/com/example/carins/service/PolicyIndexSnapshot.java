@@ -0,0 +1,125 @@
+package com.example.carins.service;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped file image of the policy interval index. Layout: a header (magic, version, the
+ * {@link Fingerprint} of the tables it was taken from, provider, car and policy counts), the provider names as
+ * length-prefixed UTF-8, every car id, then one {@code [carId:long, policyId:long, startDay:int, endDay:int,
+ * providerCode:int]} record per policy. Snapshots of earlier versions, without providers (1) or policy versions
+ * (2) in their fingerprint, are not read.
+ */
+public final class PolicyIndexSnapshot {
+
+    private static final int MAGIC = 0x43504958; // "CPIX"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 5 * 8 + 4 + 4 + 4;
+    private static final int CAR_BYTES = 8;
+    private static final int POLICY_BYTES = 8 + 8 + 4 + 4 + 4;
+
+    private PolicyIndexSnapshot() {
+    }
+
+    // cheap table summary: a snapshot taken from different tables is not worth restoring. Counts and max ids catch
+    // inserts and deletes, the sum of the policy versions also the date edits of existing policies
+    public record Fingerprint(long cars, long maxCarId, long policies, long maxPolicyId, long policyVersions) {
+    }
+
+    public record Contents(Fingerprint fingerprint, PolicyStore store) {
+    }
+
+    // writes next to the target and moves it into place, so a crash never leaves a half-written snapshot
+    static void write(Path path, Fingerprint fingerprint, PolicyStore store) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                store.export(new PolicyStore.Exporter() {
+                    private MappedByteBuffer buffer;
+
+                    @Override
+                    public void begin(String[] providerNames, int cars, int policies) throws IOException {
+                        byte[][] names = new byte[providerNames.length][];
+                        long size = HEADER_BYTES + (long) cars * CAR_BYTES + (long) policies * POLICY_BYTES;
+                        for (int i = 0; i < names.length; i++) {
+                            names[i] = providerNames[i].getBytes(StandardCharsets.UTF_8);
+                            size += 4 + names[i].length;
+                        }
+                        if (size > Integer.MAX_VALUE) {
+                            throw new IOException("Policy index snapshot would be " + size
+                                    + " bytes, more than one mapping holds");
+                        }
+                        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                        buffer.putInt(MAGIC).putInt(VERSION)
+                                .putLong(fingerprint.cars()).putLong(fingerprint.maxCarId())
+                                .putLong(fingerprint.policies()).putLong(fingerprint.maxPolicyId())
+                                .putLong(fingerprint.policyVersions())
+                                .putInt(names.length).putInt(cars).putInt(policies);
+                        for (byte[] name : names) {
+                            buffer.putInt(name.length).put(name);
+                        }
+                    }
+
+                    @Override
+                    public void car(long carId) {
+                        buffer.putLong(carId);
+                    }
+
+                    @Override
+                    public void row(long carId, long policyId, int startDay, int endDay, int providerCode) {
+                        buffer.putLong(carId).putLong(policyId).putInt(startDay).putInt(endDay).putInt(providerCode);
+                    }
+                });
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // returns null when there is no usable snapshot
+    public static Contents read(Path path, boolean offHeap) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            Fingerprint fingerprint = new Fingerprint(buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getLong(), buffer.getLong());
+            String[] providerNames = new String[buffer.getInt()];
+            int carCount = buffer.getInt();
+            int policyCount = buffer.getInt();
+            for (int i = 0; i < providerNames.length; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                providerNames[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            PolicyStore store = new PolicyStore(offHeap);
+            for (int c = 0; c < carCount; c++) {
+                store.putCar(buffer.getLong());
+            }
+            for (int p = 0; p < policyCount; p++) {
+                long carId = buffer.getLong();
+                long policyId = buffer.getLong();
+                int startDay = buffer.getInt();
+                int endDay = buffer.getInt();
+                int providerCode = buffer.getInt();
+                store.upsert(carId, policyId, startDay, endDay, providerCode < 0 ? null : providerNames[providerCode]);
+            }
+            store.trimToSize();
+            return new Contents(fingerprint, store);
+        } catch (BufferUnderflowException | NegativeArraySizeException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.carins.service;
+
+import com.example.carins.config.ReplicaRoutingDataSource;
+import com.example.carins.model.InsurancePolicy;
+import com.example.carins.repo.CarRepository;
+import com.example.carins.repo.InsurancePolicyRepository;
+import com.example.carins.repo.PolicyProviderView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Every car and its dated policies in a {@link PolicyStore}: primitive columns with the provider as a dictionary
+ * code, on the heap or, with {@code carins.policy-index.off-heap}, in direct memory. A full load builds a new
+ * store and swaps it in, so readers never see a half-loaded one.
+ * <p>
+ * With a snapshot path configured the index is saved on shutdown and after each full load. On start a snapshot
+ * whose {@link PolicyIndexSnapshot.Fingerprint} still matches the tables is served at once while a full load
+ * runs in the background and replaces it.
+ */
+@Component
+public class PolicyIntervalIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PolicyIntervalIndex.class);
+
+    private final CarRepository carRepository;
+    private final InsurancePolicyRepository policyRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Path snapshotPath;
+    private final boolean offHeap;
+
+    private volatile PolicyStore store;
+    private final Set<Long> changedDuringWarmUp = ConcurrentHashMap.newKeySet();
+    private final ReentrantReadWriteLock warmUpLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    // true until a full load finishes: writes meanwhile are replayed on top of it
+    private volatile boolean loading = true;
+
+    public PolicyIntervalIndex(CarRepository carRepository,
+                               InsurancePolicyRepository policyRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${carins.policy-index.enabled:true}") boolean enabled,
+                               @Value("${carins.policy-index.snapshot-path:}") String snapshotPath,
+                               @Value("${carins.policy-index.off-heap:false}") boolean offHeap) {
+        this.carRepository = carRepository;
+        this.policyRepository = policyRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.offHeap = offHeap;
+        this.store = new PolicyStore(offHeap);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean containsCar(long carId) {
+        return store.containsCar(carId);
+    }
+
+    public boolean isActiveOn(long carId, LocalDate date) {
+        return store.isActiveOn(carId, (int) date.toEpochDay());
+    }
+
+    // the car's dated policies with their providers, in no particular order
+    public List<PolicyStore.StoredPolicy> policiesOf(long carId) {
+        return store.policiesOf(carId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            logger.info("Policy interval index disabled, validity checks go to the database");
+            return;
+        }
+        if (!ready && restoreSnapshot()) {
+            Thread.ofPlatform().daemon().name("policy-index-load").start(this::load);
+        } else {
+            load();
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void saveSnapshot() {
+        if (snapshotPath == null || !ready) return;
+        long started = System.nanoTime();
+        try {
+            PolicyStore image = store;
+            PolicyIndexSnapshot.write(snapshotPath, fingerprint(), image);
+            logger.info("Policy interval index snapshot of {} cars written to {} in {} ms",
+                    image.cars(), snapshotPath, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not write policy interval index snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    // a full load from the database; writes committed meanwhile are recorded and replayed on top of it. Both read
+    // the primary, since a commit that a lagging replica does not show yet would be missing from the index for good
+    private void load() {
+        long started = System.nanoTime();
+        loading = true;
+        PolicyStore loaded;
+        try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+            loaded = readOnlyTransaction.execute(status -> loadAll());
+
+            warmUpLock.writeLock().lock();
+            try {
+                for (Long carId : changedDuringWarmUp) {
+                    reloadCar(loaded, carId);
+                }
+                changedDuringWarmUp.clear();
+                store = loaded;
+                loading = false;
+                ready = true;
+            } finally {
+                warmUpLock.writeLock().unlock();
+            }
+        }
+        logger.info("Policy interval index warmed with {} cars and {} policies in {} ms, {} KiB {}",
+                loaded.cars(), loaded.policies(), (System.nanoTime() - started) / 1_000_000,
+                loaded.footprintBytes() / 1024, offHeap ? "off heap" : "on heap");
+        saveSnapshot();
+    }
+
+    private boolean restoreSnapshot() {
+        if (snapshotPath == null) return false;
+        long started = System.nanoTime();
+        try {
+            PolicyIndexSnapshot.Contents snapshot = PolicyIndexSnapshot.read(snapshotPath, offHeap);
+            if (snapshot == null) return false;
+            if (!snapshot.fingerprint().equals(fingerprint())) {
+                logger.info("Policy interval index snapshot {} is stale, loading from the database", snapshotPath);
+                return false;
+            }
+            store = snapshot.store();
+            ready = true;
+            logger.info("Policy interval index restored {} cars from {} in {} ms",
+                    store.cars(), snapshotPath, (System.nanoTime() - started) / 1_000_000);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read policy interval index snapshot {}", snapshotPath, e);
+            return false;
+        }
+    }
+
+    private PolicyIndexSnapshot.Fingerprint fingerprint() {
+        try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+            return readOnlyTransaction.execute(status -> new PolicyIndexSnapshot.Fingerprint(carRepository.count(),
+                    carRepository.findMaxId(), policyRepository.count(), policyRepository.findMaxId(),
+                    policyRepository.sumVersions()));
+        }
+    }
+
+    void addCar(long carId) {
+        apply(carId, target -> target.putCar(carId));
+    }
+
+    void removeCar(long carId) {
+        apply(carId, target -> target.removeCar(carId));
+    }
+
+    void upsertPolicy(long carId, long policyId, LocalDate startDate, LocalDate endDate, String provider) {
+        apply(carId, target -> {
+            if (startDate == null || endDate == null) {
+                // an undated policy covers nothing: the index only keeps the car
+                target.putCar(carId);
+                target.remove(carId, policyId);
+            } else {
+                target.upsert(carId, policyId, epochDay(startDate), epochDay(endDate), provider);
+            }
+        });
+    }
+
+    void removePolicy(long carId, long policyId) {
+        apply(carId, target -> target.remove(carId, policyId));
+    }
+
+    private void apply(long carId, Consumer<PolicyStore> change) {
+        if (!enabled) return;
+        warmUpLock.readLock().lock();
+        try {
+            if (loading) {
+                changedDuringWarmUp.add(carId);
+            }
+            if (!ready) return;
+            change.accept(store);
+        } finally {
+            warmUpLock.readLock().unlock();
+        }
+    }
+
+    private PolicyStore loadAll() {
+        PolicyStore loaded = new PolicyStore(offHeap);
+        try (Stream<Long> carIds = carRepository.streamAllIds()) {
+            carIds.forEach(loaded::putCar);
+        }
+        try (Stream<PolicyProviderView> rows = policyRepository.streamAllIntervals()) {
+            rows.forEach(row -> loaded.upsert(row.getCarId(), row.getId(), epochDay(row.getStartDate()),
+                    epochDay(row.getEndDate()), row.getProvider()));
+        }
+        loaded.trimToSize();
+        return loaded;
+    }
+
+    private void reloadCar(PolicyStore target, Long carId) {
+        target.removeCar(carId);
+        if (!carRepository.existsById(carId)) return;
+        target.putCar(carId);
+        for (InsurancePolicy policy : policyRepository.findByCarId(carId)) {
+            if (policy.getStartDate() == null || policy.getEndDate() == null) continue;
+            target.upsert(carId, policy.getId(), epochDay(policy.getStartDate()), epochDay(policy.getEndDate()),
+                    policy.getProvider());
+        }
+    }
+
+    private static int epochDay(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+}
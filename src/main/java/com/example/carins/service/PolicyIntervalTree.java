@@ -0,0 +1,86 @@
+package com.example.carins.service;
+
+import com.example.carins.model.InsurancePolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One car's dated policies as a static interval tree: sorted by start day and read as an implicit balanced tree,
+ * the middle of every index range being the root of that range, with the largest end day below each node. An
+ * overlap query skips every subtree that ends before the queried start and, the array being sorted, everything
+ * right of a node that starts after the queried end, so it costs O(log n + k) for k overlapping policies. The
+ * tree never changes; a write builds the next one. {@code carVersion} is the car's policies_version it reflects.
+ */
+final class PolicyIntervalTree {
+
+    private final long carVersion;
+    private final PolicyStore.StoredPolicy[] policies;
+    private final int[] maxEnds;
+
+    private PolicyIntervalTree(long carVersion, PolicyStore.StoredPolicy[] policies) {
+        Arrays.sort(policies, Comparator.comparingInt(PolicyStore.StoredPolicy::startDay)
+                .thenComparingLong(PolicyStore.StoredPolicy::policyId));
+        this.carVersion = carVersion;
+        this.policies = policies;
+        this.maxEnds = new int[policies.length];
+        fillMaxEnds(0, policies.length - 1);
+    }
+
+    // undated policies cover nothing and are left out
+    static PolicyIntervalTree of(long carVersion, List<InsurancePolicy> policies) {
+        List<PolicyStore.StoredPolicy> dated = new ArrayList<>(policies.size());
+        for (InsurancePolicy policy : policies) {
+            if (policy.getStartDate() != null && policy.getEndDate() != null) {
+                dated.add(new PolicyStore.StoredPolicy(policy.getId(), (int) policy.getStartDate().toEpochDay(),
+                        (int) policy.getEndDate().toEpochDay(), policy.getProvider()));
+            }
+        }
+        return new PolicyIntervalTree(carVersion, dated.toArray(PolicyStore.StoredPolicy[]::new));
+    }
+
+    long carVersion() {
+        return carVersion;
+    }
+
+    // policies sharing at least one day with [startDay, endDay], in start order, except excludedPolicyId
+    List<PolicyStore.StoredPolicy> overlapping(int startDay, int endDay, long excludedPolicyId) {
+        List<PolicyStore.StoredPolicy> found = new ArrayList<>();
+        collect(0, policies.length - 1, startDay, endDay, excludedPolicyId, found);
+        return found;
+    }
+
+    // the tree after the policy was added or replaced, at the car version the write produced
+    PolicyIntervalTree with(long carVersion, PolicyStore.StoredPolicy policy) {
+        List<PolicyStore.StoredPolicy> next = new ArrayList<>(policies.length + 1);
+        for (PolicyStore.StoredPolicy existing : policies) {
+            if (existing.policyId() != policy.policyId()) next.add(existing);
+        }
+        next.add(policy);
+        return new PolicyIntervalTree(carVersion, next.toArray(PolicyStore.StoredPolicy[]::new));
+    }
+
+    private int fillMaxEnds(int lo, int hi) {
+        if (lo > hi) return Integer.MIN_VALUE;
+        int mid = (lo + hi) >>> 1;
+        int maxEnd = Math.max(policies[mid].endDay(), Math.max(fillMaxEnds(lo, mid - 1), fillMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = maxEnd;
+        return maxEnd;
+    }
+
+    private void collect(int lo, int hi, int startDay, int endDay, long excludedPolicyId,
+                         List<PolicyStore.StoredPolicy> found) {
+        if (lo > hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] < startDay) return;
+        collect(lo, mid - 1, startDay, endDay, excludedPolicyId, found);
+        PolicyStore.StoredPolicy policy = policies[mid];
+        if (policy.startDay() > endDay) return;
+        if (policy.endDay() >= startDay && policy.policyId() != excludedPolicyId) {
+            found.add(policy);
+        }
+        collect(mid + 1, hi, startDay, endDay, excludedPolicyId, found);
+    }
+}
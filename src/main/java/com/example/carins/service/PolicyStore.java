@@ -0,0 +1,571 @@
+package com.example.carins.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Policies as struct-of-arrays primitive columns: policy id and car id as longs, start and end as epoch-day ints,
+ * the provider as an int code into a dictionary of interned names, and the row of the car's next policy. A row
+ * is 32 bytes whatever the provider, and the store is a dozen arrays however many policies it holds, so the
+ * collector has next to nothing to trace. With {@code offHeap} the columns live in direct buffers outside the
+ * Java heap (bounded by {@code -XX:MaxDirectMemorySize}).
+ * <p>
+ * An open-addressing table with primitive keys maps each car id to the first row of its chain through the next
+ * column; a car without policies maps to {@link #NONE}. Chains built by a bulk load are contiguous. Removed rows
+ * go on a free list for reuse.
+ * <p>
+ * Writes hold the write lock. Point reads are optimistic and lock-free: they run against whatever they find,
+ * stay within the array bounds and chain lengths they see, and are retried under the read lock when a write
+ * overlapped them. {@link PolicyIntervalIndex} never hands out its store, so only committed writes reach it.
+ */
+public final class PolicyStore {
+
+    static final int NONE = -1;
+    private static final int MISSING = Integer.MIN_VALUE;
+    private static final int ROW_BYTES = 8 + 8 + 4 + 4 + 4 + 4;
+    private static final int INITIAL_CAPACITY = 64;
+
+    public record StoredPolicy(long policyId, int startDay, int endDay, String provider) {
+    }
+
+    // receives a consistent image of the store: the counts and dictionary first, then every car, then every row
+    interface Exporter {
+        void begin(String[] providerNames, int cars, int policies) throws IOException;
+
+        void car(long carId);
+
+        // providerCode indexes the names passed to begin, -1 for no provider
+        void row(long carId, long policyId, int startDay, int endDay, int providerCode);
+    }
+
+    private final boolean offHeap;
+    private final StampedLock lock = new StampedLock();
+    private Columns columns;
+    private LongIntTable carHeads = new LongIntTable(INITIAL_CAPACITY);
+    private String[] providerNames = new String[0];
+    private final Map<String, Integer> providerCodes = new HashMap<>();
+    private int size;           // rows ever used: the free list recycles below this mark
+    private int freeHead = NONE;
+    private int policies;
+
+    public PolicyStore(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.columns = offHeap ? new DirectColumns(INITIAL_CAPACITY) : new HeapColumns(INITIAL_CAPACITY);
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public boolean containsCar(long carId) {
+        long stamp = lock.tryOptimisticRead();
+        try {
+            boolean found = carHeads.get(carId) != MISSING;
+            if (lock.validate(stamp)) return found;
+        } catch (RuntimeException e) {
+            // a write was moving things underneath; retried below
+        }
+        stamp = lock.readLock();
+        try {
+            return carHeads.get(carId) != MISSING;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isActiveOn(long carId, int day) {
+        long stamp = lock.tryOptimisticRead();
+        try {
+            boolean active = coveringRow(carId, day) >= 0;
+            if (lock.validate(stamp)) return active;
+        } catch (RuntimeException e) {
+            // a write was moving things underneath; retried below
+        }
+        stamp = lock.readLock();
+        try {
+            return coveringRow(carId, day) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // the car's policies, in no particular order
+    public List<StoredPolicy> policiesOf(long carId) {
+        long stamp = lock.readLock();
+        try {
+            List<StoredPolicy> result = new ArrayList<>();
+            Columns c = columns;
+            for (int row = carHeads.get(carId); row >= 0; row = c.next(row)) {
+                result.add(new StoredPolicy(c.policyId(row), c.start(row), c.end(row), providerName(c.provider(row))));
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int cars() {
+        long stamp = lock.readLock();
+        try {
+            return carHeads.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int policies() {
+        long stamp = lock.readLock();
+        try {
+            return policies;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // column and table capacity in bytes, on or off the heap; the provider names are left out
+    public long footprintBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) columns.capacity() * ROW_BYTES + carHeads.bytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void putCar(long carId) {
+        long stamp = lock.writeLock();
+        try {
+            if (carHeads.get(carId) == MISSING) {
+                carHeads = carHeads.put(carId, NONE);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void removeCar(long carId) {
+        long stamp = lock.writeLock();
+        try {
+            int row = carHeads.get(carId);
+            if (row == MISSING) return;
+            while (row >= 0) {
+                int next = columns.next(row);
+                free(row);
+                row = next;
+            }
+            carHeads.remove(carId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // replaces the car's row for the policy, if any, adding the car when it is not known yet
+    public void upsert(long carId, long policyId, int startDay, int endDay, String provider) {
+        long stamp = lock.writeLock();
+        try {
+            unlink(carId, policyId);
+            int head = carHeads.get(carId);
+            int row = allocate();
+            columns.set(row, policyId, carId, startDay, endDay, providerCode(provider), head == MISSING ? NONE : head);
+            carHeads = carHeads.put(carId, row);
+            policies++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(long carId, long policyId) {
+        long stamp = lock.writeLock();
+        try {
+            unlink(carId, policyId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // holds the read lock throughout, so writers wait until the exporter is done
+    void export(Exporter exporter) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            exporter.begin(providerNames.clone(), carHeads.size(), policies);
+            carHeads.forEachKey(exporter::car);
+            Columns c = columns;
+            carHeads.forEachKey(carId -> {
+                for (int row = carHeads.get(carId); row >= 0; row = c.next(row)) {
+                    exporter.row(carId, c.policyId(row), c.start(row), c.end(row), c.provider(row));
+                }
+            });
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // drops the spare capacity left by growing, once a bulk load is done; freed rows below the mark stay
+    public void trimToSize() {
+        long stamp = lock.writeLock();
+        try {
+            if (size < columns.capacity()) {
+                columns = columns.resize(size);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // the row of a policy covering the day, NONE if there is none; bounded so a racing write cannot trap it
+    private int coveringRow(long carId, int day) {
+        Columns c = columns;
+        int row = carHeads.get(carId);
+        for (int steps = 0; row >= 0 && steps <= c.capacity(); steps++) {
+            if (c.start(row) <= day && day <= c.end(row)) return row;
+            row = c.next(row);
+        }
+        return NONE;
+    }
+
+    private String providerName(int code) {
+        return code < 0 ? null : providerNames[code];
+    }
+
+    private int providerCode(String provider) {
+        if (provider == null) return NONE;
+        Integer code = providerCodes.get(provider);
+        if (code != null) return code;
+        String[] names = Arrays.copyOf(providerNames, providerNames.length + 1);
+        names[providerNames.length] = provider;
+        providerNames = names;
+        providerCodes.put(provider, providerNames.length - 1);
+        return providerNames.length - 1;
+    }
+
+    private void unlink(long carId, long policyId) {
+        int head = carHeads.get(carId);
+        int previous = NONE;
+        for (int row = head; row >= 0; previous = row, row = columns.next(row)) {
+            if (columns.policyId(row) != policyId) continue;
+            int next = columns.next(row);
+            if (previous == NONE) {
+                carHeads = carHeads.put(carId, next);
+            } else {
+                columns.setNext(previous, next);
+            }
+            free(row);
+            return;
+        }
+    }
+
+    private int allocate() {
+        if (freeHead != NONE) {
+            int row = freeHead;
+            freeHead = columns.next(row);
+            return row;
+        }
+        if (size == columns.capacity()) {
+            columns = columns.resize(Math.max(INITIAL_CAPACITY, columns.capacity() * 2));
+        }
+        return size++;
+    }
+
+    private void free(int row) {
+        columns.set(row, 0, 0, 0, 0, NONE, freeHead);
+        freeHead = row;
+        policies--;
+    }
+
+    private abstract static class Columns {
+        abstract int capacity();
+
+        abstract long policyId(int row);
+
+        abstract int start(int row);
+
+        abstract int end(int row);
+
+        abstract int provider(int row);
+
+        abstract int next(int row);
+
+        abstract void set(int row, long policyId, long carId, int start, int end, int provider, int next);
+
+        abstract void setNext(int row, int next);
+
+        abstract Columns resize(int capacity);
+    }
+
+    private static final class HeapColumns extends Columns {
+        private final long[] policyIds;
+        private final long[] carIds;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] providers;
+        private final int[] nexts;
+
+        HeapColumns(int capacity) {
+            this(new long[capacity], new long[capacity], new int[capacity], new int[capacity], new int[capacity],
+                    new int[capacity]);
+        }
+
+        private HeapColumns(long[] policyIds, long[] carIds, int[] starts, int[] ends, int[] providers, int[] nexts) {
+            this.policyIds = policyIds;
+            this.carIds = carIds;
+            this.starts = starts;
+            this.ends = ends;
+            this.providers = providers;
+            this.nexts = nexts;
+        }
+
+        @Override
+        int capacity() {
+            return policyIds.length;
+        }
+
+        @Override
+        long policyId(int row) {
+            return policyIds[row];
+        }
+
+        @Override
+        int start(int row) {
+            return starts[row];
+        }
+
+        @Override
+        int end(int row) {
+            return ends[row];
+        }
+
+        @Override
+        int provider(int row) {
+            return providers[row];
+        }
+
+        @Override
+        int next(int row) {
+            return nexts[row];
+        }
+
+        @Override
+        void set(int row, long policyId, long carId, int start, int end, int provider, int next) {
+            policyIds[row] = policyId;
+            carIds[row] = carId;
+            starts[row] = start;
+            ends[row] = end;
+            providers[row] = provider;
+            nexts[row] = next;
+        }
+
+        @Override
+        void setNext(int row, int next) {
+            nexts[row] = next;
+        }
+
+        @Override
+        Columns resize(int capacity) {
+            return new HeapColumns(Arrays.copyOf(policyIds, capacity), Arrays.copyOf(carIds, capacity),
+                    Arrays.copyOf(starts, capacity), Arrays.copyOf(ends, capacity),
+                    Arrays.copyOf(providers, capacity), Arrays.copyOf(nexts, capacity));
+        }
+    }
+
+    // one direct buffer per column; a replaced buffer is freed by the collector once no reader holds it
+    private static final class DirectColumns extends Columns {
+        private final int capacity;
+        private final ByteBuffer policyIds;
+        private final ByteBuffer carIds;
+        private final ByteBuffer starts;
+        private final ByteBuffer ends;
+        private final ByteBuffer providers;
+        private final ByteBuffer nexts;
+
+        DirectColumns(int capacity) {
+            this.capacity = capacity;
+            this.policyIds = allocate(capacity, Long.BYTES);
+            this.carIds = allocate(capacity, Long.BYTES);
+            this.starts = allocate(capacity, Integer.BYTES);
+            this.ends = allocate(capacity, Integer.BYTES);
+            this.providers = allocate(capacity, Integer.BYTES);
+            this.nexts = allocate(capacity, Integer.BYTES);
+        }
+
+        private static ByteBuffer allocate(int capacity, int width) {
+            return ByteBuffer.allocateDirect(Math.multiplyExact(capacity, width)).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        int capacity() {
+            return capacity;
+        }
+
+        @Override
+        long policyId(int row) {
+            return policyIds.getLong(row << 3);
+        }
+
+        @Override
+        int start(int row) {
+            return starts.getInt(row << 2);
+        }
+
+        @Override
+        int end(int row) {
+            return ends.getInt(row << 2);
+        }
+
+        @Override
+        int provider(int row) {
+            return providers.getInt(row << 2);
+        }
+
+        @Override
+        int next(int row) {
+            return nexts.getInt(row << 2);
+        }
+
+        @Override
+        void set(int row, long policyId, long carId, int start, int end, int provider, int next) {
+            policyIds.putLong(row << 3, policyId);
+            carIds.putLong(row << 3, carId);
+            starts.putInt(row << 2, start);
+            ends.putInt(row << 2, end);
+            providers.putInt(row << 2, provider);
+            nexts.putInt(row << 2, next);
+        }
+
+        @Override
+        void setNext(int row, int next) {
+            nexts.putInt(row << 2, next);
+        }
+
+        @Override
+        Columns resize(int capacity) {
+            DirectColumns resized = new DirectColumns(capacity);
+            int rows = Math.min(capacity, this.capacity);
+            resized.policyIds.put(0, policyIds, 0, rows * Long.BYTES);
+            resized.carIds.put(0, carIds, 0, rows * Long.BYTES);
+            resized.starts.put(0, starts, 0, rows * Integer.BYTES);
+            resized.ends.put(0, ends, 0, rows * Integer.BYTES);
+            resized.providers.put(0, providers, 0, rows * Integer.BYTES);
+            resized.nexts.put(0, nexts, 0, rows * Integer.BYTES);
+            return resized;
+        }
+    }
+
+    // linear probing over long keys with backward-shift deletion, so there are no tombstones; put returns the
+    // table to use from then on, a larger copy once it is three quarters full
+    private static final class LongIntTable {
+        private static final long FREE = Long.MIN_VALUE;
+
+        private final long[] keys;
+        private final int[] values;
+        private int size;
+
+        LongIntTable(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+        }
+
+        int size() {
+            return size;
+        }
+
+        long bytes() {
+            return (long) keys.length * (Long.BYTES + Integer.BYTES);
+        }
+
+        // the value for key, MISSING when absent; gives up after one lap so a racing resize cannot trap it
+        int get(long key) {
+            long[] k = keys;
+            int mask = k.length - 1;
+            for (int i = slot(key, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long found = k[i];
+                if (found == key) return values[i];
+                if (found == FREE) return MISSING;
+            }
+            return MISSING;
+        }
+
+        LongIntTable put(long key, int value) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != FREE && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return this;
+            }
+            if ((size + 1) * 4 > keys.length * 3) {
+                LongIntTable grown = new LongIntTable(keys.length * 2);
+                forEachEntry(grown::insert);
+                grown.insert(key, value);
+                return grown;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            return this;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == FREE) return;
+                i = (i + 1) & mask;
+            }
+            // pull later entries of the probe run back into the hole
+            for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    i = j;
+                }
+            }
+            keys[i] = FREE;
+            size--;
+        }
+
+        void forEachKey(LongConsumer action) {
+            for (long key : keys) {
+                if (key != FREE) action.accept(key);
+            }
+        }
+
+        private void forEachEntry(EntryConsumer action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) action.accept(keys[i], values[i]);
+            }
+        }
+
+        private void insert(long key, int value) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        @FunctionalInterface
+        private interface EntryConsumer {
+            void accept(long key, int value);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.carins.service;
+
+import com.example.carins.model.Car;
+import com.example.carins.model.InsurancePolicy;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import static com.example.carins.service.PolicyIndexEntityListener.afterCommit;
+
+// drops a car's cached interval tree on any policy write, including those that bypass the policy API
+public class PolicyTreeEntityListener {
+
+    private final ObjectProvider<PolicyWriteService> writes;
+
+    public PolicyTreeEntityListener(ObjectProvider<PolicyWriteService> writes) {
+        this.writes = writes;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChanged(Object entity) {
+        Long carId = switch (entity) {
+            case InsurancePolicy policy -> policy.getCar().getId();
+            case Car car -> car.getId();
+            default -> null;
+        };
+        if (carId != null) {
+            afterCommit(() -> writes.getObject().evict(carId));
+        }
+    }
+}
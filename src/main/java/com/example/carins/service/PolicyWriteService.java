@@ -0,0 +1,185 @@
+package com.example.carins.service;
+
+import com.example.carins.config.ReplicaRoutingDataSource;
+import com.example.carins.exception.CarNotFoundException;
+import com.example.carins.exception.PolicyNotFoundException;
+import com.example.carins.exception.PolicyWriteConflictException;
+import com.example.carins.model.InsurancePolicy;
+import com.example.carins.repo.CarRepository;
+import com.example.carins.repo.InsurancePolicyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.example.carins.service.PolicyIndexEntityListener.afterCommit;
+
+/**
+ * Creates and updates policies, checking each interval against the car's other policies in a cached
+ * {@link PolicyIntervalTree}. Overlaps are either rejected, leaving nothing written, or written and reported.
+ * <p>
+ * Writers for one car are serialized on this node by a lock stripe held until commit. Across nodes, the car's
+ * {@code policies_version} is read with the tree and bumped by a compare-and-set in the same transaction: a write
+ * committed elsewhere in between fails this one with a conflict instead of slipping past the overlap check, and
+ * a cached tree built at another version is rebuilt from the database first. Updates also check the policy's
+ * own {@code @Version} against the one the client read. Writes that bypass this service evict the car's tree on
+ * this node only, so other nodes notice them only once the car's version moves.
+ */
+@Service
+public class PolicyWriteService {
+
+    private static final String READ_CAR_VERSION = "select policies_version from car where id = ?";
+    private static final String BUMP_CAR_VERSION =
+            "update car set policies_version = policies_version + 1 where id = ? and policies_version = ?";
+
+    public enum OnConflict {REJECT, FLAG}
+
+    // policy is null when the write was rejected; conflicts are the overlapping policies, in start order
+    public record WriteResult(InsurancePolicy policy, List<InsurancePolicy> conflicts) {
+    }
+
+    private final CarRepository carRepository;
+    private final InsurancePolicyRepository policyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock[] stripes;
+    private final Cache<Long, PolicyIntervalTree> trees;
+
+    public PolicyWriteService(CarRepository carRepository,
+                              InsurancePolicyRepository policyRepository,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${carins.policy-writes.lock-stripes:256}") int lockStripes,
+                              @Value("${carins.policy-writes.tree-cache-size:100000}") long treeCacheSize) {
+        this.carRepository = carRepository;
+        this.policyRepository = policyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripes = new ReentrantLock[Math.max(1, lockStripes)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.trees = Caffeine.newBuilder()
+                .maximumSize(treeCacheSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, trees, "policy-trees");
+    }
+
+    public WriteResult create(long carId, String provider, LocalDate startDate, LocalDate endDate,
+                              OnConflict onConflict) {
+        return write(carId, null, null, provider, startDate, endDate, onConflict);
+    }
+
+    // expectedVersion is the policy version the client last read
+    public WriteResult update(long carId, long policyId, long expectedVersion, String provider,
+                              LocalDate startDate, LocalDate endDate, OnConflict onConflict) {
+        return write(carId, policyId, expectedVersion, provider, startDate, endDate, onConflict);
+    }
+
+    // read from the primary: the version goes back with the update, and a stale one from a replica would only fail it
+    public InsurancePolicy get(long carId, long policyId) {
+        try (ReplicaRoutingDataSource.PrimaryPin ignored = ReplicaRoutingDataSource.pinToPrimary()) {
+            return policyRepository.findById(policyId)
+                    .filter(p -> p.getCar().getId() == carId)
+                    .orElseThrow(() -> new PolicyNotFoundException(carId, policyId));
+        }
+    }
+
+    void evict(long carId) {
+        trees.invalidate(carId);
+    }
+
+    private WriteResult write(long carId, Long policyId, Long expectedVersion, String provider,
+                              LocalDate startDate, LocalDate endDate, OnConflict onConflict) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        ReentrantLock stripe = stripes[Math.floorMod(Long.hashCode(carId), stripes.length)];
+        stripe.lock();
+        try {
+            return transactionTemplate.execute(status ->
+                    writeLocked(carId, policyId, expectedVersion, provider, startDate, endDate, onConflict));
+        } catch (OptimisticLockingFailureException e) {
+            throw new PolicyWriteConflictException("Policy " + policyId + " of car " + carId
+                    + " was changed concurrently, reload it and retry");
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private WriteResult writeLocked(long carId, Long policyId, Long expectedVersion, String provider,
+                                    LocalDate startDate, LocalDate endDate, OnConflict onConflict) {
+        List<Long> versions = jdbcTemplate.queryForList(READ_CAR_VERSION, Long.class, carId);
+        if (versions.isEmpty()) {
+            throw new CarNotFoundException(carId);
+        }
+        long carVersion = versions.get(0);
+        PolicyIntervalTree tree = trees.getIfPresent(carId);
+        if (tree == null || tree.carVersion() != carVersion) {
+            tree = PolicyIntervalTree.of(carVersion, policyRepository.findByCarId(carId));
+        }
+
+        InsurancePolicy policy;
+        if (policyId == null) {
+            policy = new InsurancePolicy(carRepository.getReferenceById(carId), provider, startDate, endDate);
+        } else {
+            policy = policyRepository.findById(policyId)
+                    .filter(p -> p.getCar().getId() == carId)
+                    .orElseThrow(() -> new PolicyNotFoundException(carId, policyId));
+            if (!Objects.equals(policy.getVersion(), expectedVersion)) {
+                throw new PolicyWriteConflictException("Policy " + policyId + " is at version " + policy.getVersion()
+                        + ", not " + expectedVersion + "; reload it and retry");
+            }
+        }
+
+        int startDay = (int) startDate.toEpochDay();
+        int endDay = (int) endDate.toEpochDay();
+        List<PolicyStore.StoredPolicy> conflicts =
+                tree.overlapping(startDay, endDay, policyId != null ? policyId : Long.MIN_VALUE);
+        if (!conflicts.isEmpty() && onConflict == OnConflict.REJECT) {
+            PolicyIntervalTree checked = tree;
+            afterCommit(() -> trees.put(carId, checked));
+            return new WriteResult(null, policiesOf(conflicts));
+        }
+
+        policy.setProvider(provider);
+        policy.setStartDate(startDate);
+        policy.setEndDate(endDate);
+        // flushed here so the id is assigned and a concurrent update of the policy fails before the bump
+        policyRepository.saveAndFlush(policy);
+        if (jdbcTemplate.update(BUMP_CAR_VERSION, carId, carVersion) == 0) {
+            throw new PolicyWriteConflictException("The policies of car " + carId
+                    + " were changed concurrently, retry");
+        }
+        PolicyIntervalTree next = tree.with(carVersion + 1,
+                new PolicyStore.StoredPolicy(policy.getId(), startDay, endDay, provider));
+        afterCommit(() -> trees.put(carId, next));
+        return new WriteResult(policy, policiesOf(conflicts));
+    }
+
+    // the tree keeps intervals only; the entities (second-level cached) carry the versions a client updates with
+    private List<InsurancePolicy> policiesOf(List<PolicyStore.StoredPolicy> stored) {
+        if (stored.isEmpty()) return List.of();
+        Map<Long, InsurancePolicy> byId = new HashMap<>();
+        for (InsurancePolicy policy : policyRepository.findAllById(
+                stored.stream().map(PolicyStore.StoredPolicy::policyId).toList())) {
+            byId.put(policy.getId(), policy);
+        }
+        return stored.stream().map(conflict -> byId.get(conflict.policyId())).filter(Objects::nonNull).toList();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.carins.service;
+
+import com.example.carins.config.ReplicaRoutingDataSource;
+import com.example.carins.repo.CarRepository;
+import com.example.carins.repo.CarVinView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Normalized VIN to car id, for every car in the database. Registrations {@link #reserve} their VIN first: the
+ * first caller wins the slot atomically and every other caller is refused without a query, so colliding
+ * registrations never reach the database at all. A reserved slot holds {@link #RESERVED} until the insert commits
+ * (the entity listener then stores the car id) or fails (the reservation is released). The {@code uk_car_vin}
+ * constraint stays the final arbiter, e.g. while the index is still loading or for rows inserted behind its back.
+ */
+@Component
+public class VinIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(VinIndex.class);
+
+    private static final Long RESERVED = -1L;
+
+    private final CarRepository carRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ConcurrentHashMap<String, Long> carIdByVin = new ConcurrentHashMap<>();
+    // removals seen while loading, replayed once the load is done so it cannot bring a deleted car back
+    private final Map<String, Long> removedDuringLoad = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public VinIndex(CarRepository carRepository, PlatformTransactionManager transactionManager) {
+        this.carRepository = carRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public static String normalize(String vin) {
+        return vin == null ? null : vin.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // the car id for a VIN, or null when no committed car has it
+    public Long find(String vin) {
+        Long carId = carIdByVin.get(normalize(vin));
+        return RESERVED.equals(carId) ? null : carId;
+    }
+
+    // false when the VIN belongs to a car or to a registration in flight
+    public boolean reserve(String vin) {
+        return carIdByVin.putIfAbsent(vin, RESERVED) == null;
+    }
+
+    // drops a reservation that did not turn into a car once the current transaction, if any, has completed
+    public void releaseAfterCompletion(String vin) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            carIdByVin.remove(vin, RESERVED);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                carIdByVin.remove(vin, RESERVED);
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        // from the primary: cars committed before the load but not yet on a replica would never be added
+        try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<CarVinView> cars = carRepository.streamAllVins()) {
+                    // a committed car takes over a reservation: the registration in flight is bound to fail and
+                    // its release must not drop the car's entry
+                    cars.forEach(car -> carIdByVin.compute(normalize(car.getVin()),
+                            (vin, carId) -> carId == null || RESERVED.equals(carId) ? car.getId() : carId));
+                }
+            });
+        }
+        ready = true;
+        removedDuringLoad.forEach(carIdByVin::remove);
+        removedDuringLoad.clear();
+        logger.info("VIN index loaded with {} cars in {} ms",
+                carIdByVin.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    void add(long carId, String vin) {
+        carIdByVin.put(normalize(vin), carId);
+    }
+
+    void update(long carId, String vin) {
+        String normalized = normalize(vin);
+        Long previous = carIdByVin.put(normalized, carId);
+        if (previous != null && previous == carId) return;
+        // the car's VIN changed: drop its old entry (a scan, but VIN corrections are rare)
+        carIdByVin.entrySet().removeIf(entry -> entry.getValue() == carId && !entry.getKey().equals(normalized));
+    }
+
+    void remove(long carId, String vin) {
+        String normalized = normalize(vin);
+        carIdByVin.remove(normalized, carId);
+        if (!ready) {
+            removedDuringLoad.put(normalized, carId);
+        }
+    }
+}
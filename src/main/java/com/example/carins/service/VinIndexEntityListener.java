@@ -0,0 +1,40 @@
+package com.example.carins.service;
+
+import com.example.carins.model.Car;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import static com.example.carins.service.PolicyIndexEntityListener.afterCommit;
+
+public class VinIndexEntityListener {
+
+    // resolved lazily, like the policy index: the VIN index depends on repositories built after this listener
+    private final ObjectProvider<VinIndex> index;
+
+    public VinIndexEntityListener(ObjectProvider<VinIndex> index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    public void onPersisted(Car car) {
+        long carId = car.getId();
+        String vin = car.getVin();
+        afterCommit(() -> index.getObject().add(carId, vin));
+    }
+
+    @PostUpdate
+    public void onUpdated(Car car) {
+        long carId = car.getId();
+        String vin = car.getVin();
+        afterCommit(() -> index.getObject().update(carId, vin));
+    }
+
+    @PostRemove
+    public void onRemoved(Car car) {
+        long carId = car.getId();
+        String vin = car.getVin();
+        afterCommit(() -> index.getObject().remove(carId, vin));
+    }
+}
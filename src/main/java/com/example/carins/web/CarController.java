@@ -1,41 +1,144 @@
 package com.example.carins.web;
 
 import com.example.carins.exception.CarNotFoundException;
+import com.example.carins.exception.ClaimBacklogFullException;
 import com.example.carins.exception.InvalidInsuranceException;
 import com.example.carins.model.Car;
 import com.example.carins.model.InsuranceClaim;
+import com.example.carins.service.AsyncClaimWriter;
 import com.example.carins.service.CarService;
+import com.example.carins.service.ClaimSubmission;
+import com.example.carins.service.DataVersions;
+import com.example.carins.service.InsuranceCheck;
+import com.example.carins.web.dto.AsyncClaimStatusDto;
 import com.example.carins.web.dto.CarDto;
-import com.example.carins.web.dto.CarHistoryEventDto;
+import com.example.carins.web.dto.ClaimImportResultDto;
+import com.example.carins.web.dto.ClaimRequestDto;
 import com.example.carins.web.dto.InsuranceClaimDto;
+import com.example.carins.web.dto.InsuranceValidityCheckDto;
+import com.example.carins.web.dto.InsuranceValidityResultDto;
 import com.example.carins.web.utilities.DateValidator;
+import com.example.carins.web.utilities.KeysetCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api")
 public class CarController {
 
+    private static final int MAX_VALIDITY_CHECKS = 10_000;
+    private static final int VALIDITY_CHECK_CHUNK = 500;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_CHUNK = 500;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int CLAIM_IMPORT_CHUNK = 1000;
+
     private final CarService service;
 
     private final DateValidator dateValidator;
 
-    public CarController(CarService service, DateValidator dateValidator) {
+    private final ObjectMapper objectMapper;
+
+    private final AsyncClaimWriter asyncClaimWriter;
+
+    private final DataVersions dataVersions;
+
+    private final ResponseCache responseCache;
+
+    public CarController(CarService service, DateValidator dateValidator, ObjectMapper objectMapper,
+                         AsyncClaimWriter asyncClaimWriter, DataVersions dataVersions, ResponseCache responseCache) {
         this.service = service;
         this.dateValidator = dateValidator;
+        this.objectMapper = objectMapper;
+        this.asyncClaimWriter = asyncClaimWriter;
+        this.dataVersions = dataVersions;
+        this.responseCache = responseCache;
+    }
+
+    // the car lists and history carry version ETags: a matching If-None-Match is answered with 304 before any
+    // query runs, and a changed version is rendered once and then served from the response cache
+    @GetMapping(value = "/cars", params = {"!cursor", "!limit"})
+    public ResponseEntity<StreamingResponseBody> getCars(WebRequest request) {
+        String etag = dataVersions.fleetTag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        long[] lastId = {0};
+        StreamingResponseBody body = responseCache.stream("cars", etag, jsonArrayOf(() -> {
+            List<CarDto> page = service.listCarsAfter(lastId[0], STREAM_CHUNK);
+            if (!page.isEmpty()) lastId[0] = page.get(page.size() - 1).id();
+            return page;
+        }));
+        // checkNotModified has already set the ETag; the streaming handler would add a second one
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @GetMapping("/cars")
-    public List<CarDto> getCars() {
-        return service.listCars().stream().map(this::toDto).toList();
+    public ResponseEntity<byte[]> getCarsPage(@RequestParam(required = false) String cursor,
+                                              @RequestParam(required = false) Integer limit,
+                                              WebRequest request) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        long afterId = cursor != null ? KeysetCursor.decode(cursor) : 0;
+        String etag = dataVersions.fleetTag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        ResponseCache.Entry page = responseCache.get("cars:" + afterId + ":" + pageSize, etag, () -> {
+            List<CarDto> cars = service.listCarsAfter(afterId, pageSize + 1);
+            if (cars.size() <= pageSize) {
+                return new ResponseCache.Entry(etag, toJson(cars), null);
+            }
+            cars = cars.subList(0, pageSize);
+            return new ResponseCache.Entry(etag, toJson(cars), KeysetCursor.encode(cars.get(pageSize - 1).id()));
+        });
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON);
+        if (page.nextCursor() != null) {
+            // built per request rather than cached: the link follows the host the client used
+            URI next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.nextCursor())
+                    .replaceQueryParam("limit", pageSize)
+                    .build().toUri();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                    .header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.body());
+    }
+
+    // resolved through the in-memory VIN index; the car itself usually comes from the second-level cache
+    @GetMapping("/cars/by-vin/{vin}")
+    public CarDto getCarByVin(@PathVariable String vin) {
+        return service.findCarByVin(vin)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No car with VIN: " + vin));
     }
 
     @GetMapping("/cars/{carId}/insurance-valid")
@@ -50,30 +153,74 @@ public class CarController {
         return ResponseEntity.ok(new InsuranceValidityResponse(carId, parsedDate.toString(), valid));
     }
 
-    @PostMapping("/cars/{carId}/claims")
-    public ResponseEntity<?> claimCar(@PathVariable Long carId, @RequestParam String claimDate, @RequestParam String description, @RequestParam String amount) {
-        LocalDate parsedClaimDate = dateValidator.validateAndParse(claimDate);
-        if (description == null || description.trim().length() < 10) {
+    @PostMapping("/cars/insurance-valid")
+    public ResponseEntity<StreamingResponseBody> areInsurancesValid(@RequestBody List<InsuranceValidityCheckDto> checks) {
+        if (checks.size() > MAX_VALIDITY_CHECKS) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Description is required and must be at least 10 characters");
-        }
-        if (description.length() > 1000) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Description must not exceed 1000 characters");
+                    "At most " + MAX_VALIDITY_CHECKS + " checks are accepted per request");
         }
 
-        BigDecimal parsedAmount;
-        try {
-            parsedAmount = new BigDecimal(amount);
-            if (parsedAmount.compareTo(BigDecimal.ZERO) <= 0) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        "Amount must be positive");
+        int[] from = {0};
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(jsonArrayOf(() -> {
+            if (from[0] >= checks.size()) return List.of();
+            List<InsuranceValidityCheckDto> chunk =
+                    checks.subList(from[0], Math.min(from[0] + VALIDITY_CHECK_CHUNK, checks.size()));
+            from[0] += chunk.size();
+            return checkChunk(chunk);
+        }));
+    }
+
+    // writes chunks as one JSON array, flushing after each chunk, until the supplier returns an empty list
+    private <T> StreamingResponseBody jsonArrayOf(Supplier<List<T>> nextChunk) {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                json.writeStartArray();
+                for (List<T> chunk = nextChunk.get(); !chunk.isEmpty(); chunk = nextChunk.get()) {
+                    for (T item : chunk) {
+                        writer.writeValue(json, item);
+                    }
+                    json.flush();
+                }
+                json.writeEndArray();
             }
-        } catch (NumberFormatException e) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Invalid amount format. Use decimal number (e.g., 123.45)");
+        };
+    }
+
+    private List<InsuranceValidityResultDto> checkChunk(List<InsuranceValidityCheckDto> chunk) {
+        InsuranceValidityResultDto[] results = new InsuranceValidityResultDto[chunk.size()];
+        List<InsuranceCheck> valid = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            InsuranceValidityCheckDto check = chunk.get(i);
+            if (check == null || check.carId() == null) {
+                results[i] = InsuranceValidityResultDto.error(null, check != null ? check.date() : null,
+                        "carId is required");
+                continue;
+            }
+            int epochDay = dateValidator.parseEpochDay(check.date());
+            if (DateValidator.isFailure(epochDay)) {
+                results[i] = InsuranceValidityResultDto.error(check.carId(), check.date(), dateValidator.reason(epochDay));
+                continue;
+            }
+            valid.add(new InsuranceCheck(check.carId(), LocalDate.ofEpochDay(epochDay)));
+            positions.add(i);
         }
 
+        List<InsuranceValidityResultDto> resolved = service.checkInsuranceValidity(valid);
+        for (int i = 0; i < resolved.size(); i++) {
+            results[positions.get(i)] = resolved.get(i);
+        }
+        return List.of(results);
+    }
+
+    @PostMapping("/cars/{carId}/claims")
+    public ResponseEntity<?> claimCar(@PathVariable Long carId, @RequestParam String claimDate, @RequestParam String description, @RequestParam String amount) {
+        LocalDate parsedClaimDate = dateValidator.validateAndParse(claimDate);
+        validateDescription(description);
+        BigDecimal parsedAmount = parseAmount(amount);
+
         InsuranceClaim claim;
         try {
             claim = service.registerClaim(carId, parsedClaimDate, description.trim(), parsedAmount);
@@ -92,12 +239,146 @@ public class CarController {
         return ResponseEntity.created(location).body(claimDto);
     }
 
-    private CarDto toDto(Car c) {
-        var o = c.getOwner();
-        return new CarDto(c.getId(), c.getVin(), c.getMake(), c.getModel(), c.getYearOfManufacture(),
-                o != null ? o.getId() : null,
-                o != null ? o.getName() : null,
-                o != null ? o.getEmail() : null);
+    // accepted into the local claim log and written to the database in the background; poll the Location
+    @PostMapping("/cars/{carId}/claims/async")
+    public ResponseEntity<AsyncClaimStatusDto> claimCarAsync(@PathVariable Long carId, @RequestParam String claimDate,
+                                                             @RequestParam String description, @RequestParam String amount) {
+        requireAsyncClaims();
+        LocalDate parsedClaimDate = dateValidator.validateAndParse(claimDate);
+        validateDescription(description);
+        BigDecimal parsedAmount = parseAmount(amount);
+        if (parsedAmount.scale() > 2) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Amount must have at most 2 decimal places");
+        }
+
+        long trackingId;
+        try {
+            trackingId = asyncClaimWriter.submit(carId, parsedClaimDate, description.trim(), parsedAmount);
+        } catch (CarNotFoundException | InvalidInsuranceException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (ClaimBacklogFullException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/claims/async/{trackingId}")
+                .buildAndExpand(trackingId)
+                .toUri();
+        return ResponseEntity.accepted().location(location)
+                .body(AsyncClaimStatusDto.of(trackingId, AsyncClaimStatusDto.Status.PENDING));
+    }
+
+    @GetMapping("/claims/async/{trackingId}")
+    public AsyncClaimStatusDto getAsyncClaimStatus(@PathVariable long trackingId) {
+        requireAsyncClaims();
+        AsyncClaimStatusDto status = asyncClaimWriter.status(trackingId);
+        if (status.status() == AsyncClaimStatusDto.Status.UNKNOWN) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown tracking id: " + trackingId);
+        }
+        return status;
+    }
+
+    private void requireAsyncClaims() {
+        if (!asyncClaimWriter.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Asynchronous claim registration is disabled");
+        }
+    }
+
+    @PostMapping(value = "/claims", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> importClaims(InputStream body) {
+        ObjectReader reader = objectMapper.readerFor(ClaimRequestDto.class);
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody results = out -> {
+            try (MappingIterator<ClaimRequestDto> claims = reader.readValues(body);
+                 JsonGenerator json = objectMapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                json.setRootValueSeparator(null);
+                List<ClaimSubmission> submissions = new ArrayList<>(CLAIM_IMPORT_CHUNK);
+                List<ClaimImportResultDto> rejected = new ArrayList<>();
+                long line = 0;
+                while (hasNextClaim(claims, line + 1, rejected)) {
+                    line++;
+                    try {
+                        ClaimRequestDto claim = claims.next();
+                        try {
+                            submissions.add(toSubmission(line, claim));
+                        } catch (ResponseStatusException e) {
+                            rejected.add(ClaimImportResultDto.rejected(line, claim != null ? claim.carId() : null, e.getReason()));
+                        }
+                    } catch (RuntimeException e) {
+                        // binding errors skip to the next claim; syntax errors end the input at hasNextClaim
+                        rejected.add(ClaimImportResultDto.rejected(line, null, "Malformed claim"));
+                    }
+                    if (submissions.size() + rejected.size() >= CLAIM_IMPORT_CHUNK) {
+                        writeClaimResults(json, writer, submissions, rejected);
+                    }
+                }
+                writeClaimResults(json, writer, submissions, rejected);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(results);
+    }
+
+    // a body that is no longer valid JSON cannot be resynchronised, so it ends the import with an error on that line
+    private static boolean hasNextClaim(MappingIterator<ClaimRequestDto> claims, long line, List<ClaimImportResultDto> rejected) {
+        try {
+            return claims.hasNextValue();
+        } catch (IOException e) {
+            rejected.add(ClaimImportResultDto.rejected(line, null, "Malformed input, import stopped here"));
+            return false;
+        }
+    }
+
+    private void writeClaimResults(JsonGenerator json, ObjectWriter writer, List<ClaimSubmission> submissions,
+                                   List<ClaimImportResultDto> rejected) throws IOException {
+        List<ClaimImportResultDto> chunk = new ArrayList<>(rejected);
+        if (!submissions.isEmpty()) {
+            chunk.addAll(service.registerClaims(submissions));
+        }
+        chunk.sort(Comparator.comparingLong(ClaimImportResultDto::line));
+        for (ClaimImportResultDto result : chunk) {
+            writer.writeValue(json, result);
+            json.writeRaw('\n');
+        }
+        json.flush();
+        submissions.clear();
+        rejected.clear();
+    }
+
+    private ClaimSubmission toSubmission(long line, ClaimRequestDto claim) {
+        if (claim == null || claim.carId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "carId is required");
+        }
+        LocalDate claimDate = dateValidator.validateAndParse(claim.claimDate());
+        validateDescription(claim.description());
+        BigDecimal amount = parseAmount(claim.amount());
+        return new ClaimSubmission(line, claim.carId(), claimDate, claim.description().trim(), amount);
+    }
+
+    private static void validateDescription(String description) {
+        if (description == null || description.trim().length() < 10) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Description is required and must be at least 10 characters");
+        }
+        if (description.length() > 1000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Description must not exceed 1000 characters");
+        }
+    }
+
+    private static BigDecimal parseAmount(String amount) {
+        BigDecimal parsedAmount;
+        try {
+            parsedAmount = new BigDecimal(amount);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid amount format. Use decimal number (e.g., 123.45)");
+        }
+        if (parsedAmount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Amount must be positive");
+        }
+        return parsedAmount;
     }
 
     private InsuranceClaimDto toClaimDto(InsuranceClaim claim) {
@@ -112,8 +393,36 @@ public class CarController {
     }
 
     @GetMapping("/cars/{carId}/history")
-    public List<CarHistoryEventDto> getCarHistory(@PathVariable Long carId) {
-        return service.getCarHistory(carId);
+    public ResponseEntity<byte[]> getCarHistory(@PathVariable Long carId,
+                                                @RequestParam(required = false) String from,
+                                                @RequestParam(required = false) String to,
+                                                @RequestParam(required = false) Integer limit,
+                                                WebRequest request) {
+        LocalDate parsedFrom = from != null ? dateValidator.validateAndParse(from) : null;
+        LocalDate parsedTo = to != null ? dateValidator.validateAndParse(to) : null;
+        if (parsedFrom != null && parsedTo != null && parsedFrom.isAfter(parsedTo)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must not be after 'to'");
+        }
+        if (limit != null && limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be positive");
+        }
+        String etag = dataVersions.carTag(carId, LocalDate.now());
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        String key = "history:" + carId + ":" + parsedFrom + ":" + parsedTo + ":" + limit;
+        ResponseCache.Entry history = responseCache.get(key, etag, () -> new ResponseCache.Entry(etag,
+                toJson(service.getCarHistory(carId, parsedFrom, parsedTo, limit)), null));
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(history.body());
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
     }
 
     public record InsuranceValidityResponse(Long carId, String date, boolean valid) {
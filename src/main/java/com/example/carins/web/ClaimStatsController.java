@@ -0,0 +1,69 @@
+package com.example.carins.web;
+
+import com.example.carins.service.ClaimRollupService;
+import com.example.carins.service.ClaimRollupService.Dimension;
+import com.example.carins.web.dto.ClaimStatsDto;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// Claim counts and totals served from the claim rollups; keys without claims answer zero
+@RestController
+@RequestMapping("/api/claims/stats")
+public class ClaimStatsController {
+
+    private final ClaimRollupService rollupService;
+
+    public ClaimStatsController(ClaimRollupService rollupService) {
+        this.rollupService = rollupService;
+    }
+
+    @GetMapping("/cars/{carId}")
+    public ClaimStatsDto getCarStats(@PathVariable long carId) {
+        return rollupService.find(Dimension.CAR, Long.toString(carId));
+    }
+
+    @GetMapping("/providers")
+    public List<ClaimStatsDto> getProviderStats() {
+        return rollupService.list(Dimension.PROVIDER, null, null);
+    }
+
+    @GetMapping("/providers/{provider}")
+    public ClaimStatsDto getProviderStats(@PathVariable String provider) {
+        return rollupService.find(Dimension.PROVIDER, provider);
+    }
+
+    @GetMapping("/months")
+    public List<ClaimStatsDto> getMonthStats(@RequestParam(required = false) String from,
+                                             @RequestParam(required = false) String to) {
+        YearMonth parsedFrom = from != null ? parseMonth(from) : null;
+        YearMonth parsedTo = to != null ? parseMonth(to) : null;
+        if (parsedFrom != null && parsedTo != null && parsedFrom.isAfter(parsedTo)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must not be after 'to'");
+        }
+        return rollupService.list(Dimension.MONTH,
+                parsedFrom != null ? parsedFrom.toString() : null,
+                parsedTo != null ? parsedTo.toString() : null);
+    }
+
+    @GetMapping("/months/{month}")
+    public ClaimStatsDto getMonthStats(@PathVariable String month) {
+        return rollupService.find(Dimension.MONTH, parseMonth(month).toString());
+    }
+
+    private static YearMonth parseMonth(String month) {
+        try {
+            return YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid month format. Use YYYY-MM");
+        }
+    }
+}
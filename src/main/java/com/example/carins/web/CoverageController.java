@@ -0,0 +1,94 @@
+package com.example.carins.web;
+
+import com.example.carins.service.CoverageService;
+import com.example.carins.web.utilities.DateValidator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+// Fleet-wide coverage for compliance, streamed as NDJSON in car id order; carId (repeatable) narrows the scan
+@RestController
+@RequestMapping("/api/coverage")
+public class CoverageController {
+
+    private static final int MAX_CAR_IDS = 1000;
+    private static final int FLUSH_EVERY = 1000;
+
+    private final CoverageService coverageService;
+    private final DateValidator dateValidator;
+    private final ObjectMapper objectMapper;
+
+    public CoverageController(CoverageService coverageService, DateValidator dateValidator, ObjectMapper objectMapper) {
+        this.coverageService = coverageService;
+        this.dateValidator = dateValidator;
+        this.objectMapper = objectMapper;
+    }
+
+    // cars with no policy covering the date
+    @GetMapping("/uninsured")
+    public ResponseEntity<StreamingResponseBody> getUninsured(@RequestParam String date,
+                                                              @RequestParam(required = false) List<Long> carId) {
+        LocalDate parsedDate = dateValidator.validateAndParse(date);
+        List<Long> carIds = checkCarIds(carId);
+        return ndjson(sink -> coverageService.streamUninsured(parsedDate, carIds, sink::accept));
+    }
+
+    // cars with uncovered days in [from, to], listing them as ranges
+    @GetMapping("/gaps")
+    public ResponseEntity<StreamingResponseBody> getGaps(@RequestParam String from,
+                                                         @RequestParam String to,
+                                                         @RequestParam(required = false) List<Long> carId) {
+        LocalDate parsedFrom = dateValidator.validateAndParse(from);
+        LocalDate parsedTo = dateValidator.validateAndParse(to);
+        if (parsedFrom.isAfter(parsedTo)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' must not be after 'to'");
+        }
+        List<Long> carIds = checkCarIds(carId);
+        return ndjson(sink -> coverageService.streamGaps(parsedFrom, parsedTo, carIds, sink::accept));
+    }
+
+    private static List<Long> checkCarIds(List<Long> carIds) {
+        if (carIds != null && carIds.size() > MAX_CAR_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_CAR_IDS + " car ids are accepted per request");
+        }
+        return carIds;
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(Scan scan) {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                json.setRootValueSeparator(null);
+                int[] written = {0};
+                scan.run(row -> {
+                    writer.writeValue(json, row);
+                    json.writeRaw('\n');
+                    if (++written[0] % FLUSH_EVERY == 0) {
+                        json.flush();
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @FunctionalInterface
+    private interface Scan {
+        void run(CoverageService.RowSink<Object> sink) throws IOException;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.carins.web;
+
+import com.example.carins.service.ExportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Columnar exports of whole tables (format documented on ColumnarWriter), meant for bulk analytics pulls
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    public static final MediaType COLUMNAR = MediaType.parseMediaType("application/vnd.carins.columnar");
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping("/claims")
+    public ResponseEntity<StreamingResponseBody> exportClaims() {
+        return columnar("claims.ciex", exportService::exportClaims);
+    }
+
+    @GetMapping("/policies")
+    public ResponseEntity<StreamingResponseBody> exportPolicies() {
+        return columnar("policies.ciex", exportService::exportPolicies);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> columnar(String fileName, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(COLUMNAR)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+}
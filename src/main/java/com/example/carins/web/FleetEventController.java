@@ -0,0 +1,105 @@
+package com.example.carins.web;
+
+import com.example.carins.exception.SubscriberLimitException;
+import com.example.carins.service.FleetEvent;
+import com.example.carins.service.FleetEventStream;
+import com.example.carins.web.dto.EventGapDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+
+// Server-sent events for new claims (claim-created) and logged policy expirations (policy-expired), filtered by
+// carId and provider (both repeatable). Each event's id is its sequence number: EventSource clients send it back
+// as Last-Event-ID when they reconnect, others pass it as 'since'. Skipped events arrive as a 'gap' event.
+@RestController
+@RequestMapping("/api/events")
+public class FleetEventController {
+
+    private static final String GAP = "gap";
+
+    private final FleetEventStream eventStream;
+    private final int defaultBuffer;
+    private final long timeoutMillis;
+
+    public FleetEventController(FleetEventStream eventStream,
+                                @Value("${carins.events.default-buffer:1000}") int defaultBuffer,
+                                @Value("${carins.events.timeout:PT30M}") Duration timeout) {
+        this.eventStream = eventStream;
+        this.defaultBuffer = defaultBuffer;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@RequestParam(required = false) Set<Long> carId,
+                                                @RequestParam(required = false) Set<String> provider,
+                                                @RequestParam(required = false) Long since,
+                                                @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                                @RequestParam(defaultValue = "drop") String overflow,
+                                                @RequestParam(required = false) Integer buffer) {
+        FleetEventStream.Overflow overflowPolicy = parseOverflow(overflow);
+        int bufferSize = buffer != null ? buffer : Math.min(defaultBuffer, eventStream.retained());
+        if (bufferSize < 1 || bufferSize > eventStream.retained()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Buffer must be between 1 and " + eventStream.retained());
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        FleetEventStream.Subscription subscription;
+        try {
+            subscription = eventStream.subscribe(new FleetEventStream.Filter(carId, provider),
+                    lastEventId != null ? lastEventId : since, overflowPolicy, bufferSize, new EmitterSink(emitter));
+        } catch (SubscriberLimitException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    private static FleetEventStream.Overflow parseOverflow(String overflow) {
+        try {
+            return FleetEventStream.Overflow.valueOf(overflow.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Overflow must be 'drop' or 'disconnect'");
+        }
+    }
+
+    private record EmitterSink(SseEmitter emitter) implements FleetEventStream.Sink {
+        @Override
+        public void event(long seq, FleetEvent event) throws IOException {
+            emitter.send(SseEmitter.event().id(Long.toString(seq)).name(event.type())
+                    .data(event.data(), MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void gap(long after, long upTo) throws IOException {
+            emitter.send(SseEmitter.event().id(Long.toString(upTo)).name(GAP)
+                    .data(new EventGapDto(after, upTo), MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("keep-alive"));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.carins.web;
+
+import com.example.carins.exception.OwnerNotFoundException;
+import com.example.carins.service.OwnerPortfolioService;
+import com.example.carins.web.dto.OwnerPortfolioDto;
+import com.example.carins.web.utilities.DateValidator;
+import com.example.carins.web.utilities.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.time.LocalDate;
+
+// An owner's cars with their active policies and recent claims, paged by car id like /api/cars: the next page
+// is in the Link and X-Next-Cursor headers
+@RestController
+@RequestMapping("/api/owners")
+public class OwnerController {
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final OwnerPortfolioService portfolioService;
+    private final DateValidator dateValidator;
+    private final int recentClaimDays;
+
+    public OwnerController(OwnerPortfolioService portfolioService, DateValidator dateValidator,
+                           @Value("${carins.portfolio.recent-claim-days:365}") int recentClaimDays) {
+        this.portfolioService = portfolioService;
+        this.dateValidator = dateValidator;
+        this.recentClaimDays = recentClaimDays;
+    }
+
+    // date picks the active policies (today by default), claimsSince the first claim day (recent-claim-days ago)
+    @GetMapping("/{ownerId}/portfolio")
+    public ResponseEntity<OwnerPortfolioDto> getPortfolio(@PathVariable long ownerId,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer limit,
+                                                          @RequestParam(required = false) String date,
+                                                          @RequestParam(required = false) String claimsSince) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        long afterId = cursor != null ? KeysetCursor.decode(cursor) : 0;
+        LocalDate activeOn = date != null ? dateValidator.validateAndParse(date) : LocalDate.now();
+        LocalDate since = claimsSince != null
+                ? dateValidator.validateAndParse(claimsSince)
+                : LocalDate.now().minusDays(recentClaimDays);
+
+        OwnerPortfolioService.Page page;
+        try {
+            page = portfolioService.getPortfolio(ownerId, afterId, pageSize, activeOn, since);
+        } catch (OwnerNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.lastCarId() != null) {
+            String nextCursor = KeysetCursor.encode(page.lastCarId());
+            URI next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", nextCursor)
+                    .replaceQueryParam("limit", pageSize)
+                    .build().toUri();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                    .header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(page.portfolio());
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.carins.web;
+
+import com.example.carins.service.PolicyAnalyticsService;
+import com.example.carins.web.dto.PolicyAnalyticsDto;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Fleet-wide policy analytics: the last computed figures, or a fresh pass on demand
+@RestController
+@RequestMapping("/api/analytics/policies")
+public class PolicyAnalyticsController {
+
+    private final PolicyAnalyticsService analyticsService;
+
+    public PolicyAnalyticsController(PolicyAnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    // computed on the first request when the scheduled pass has not run yet
+    @GetMapping
+    public PolicyAnalyticsDto getAnalytics() {
+        return analyticsService.latestOrRun();
+    }
+
+    // recomputes now; a request arriving while a pass runs waits for that pass instead of starting another
+    @PostMapping("/runs")
+    public PolicyAnalyticsDto runAnalytics() {
+        return analyticsService.run();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.carins.web;
+
+import com.example.carins.exception.CarNotFoundException;
+import com.example.carins.exception.PolicyNotFoundException;
+import com.example.carins.exception.PolicyWriteConflictException;
+import com.example.carins.model.InsurancePolicy;
+import com.example.carins.service.PolicyWriteService;
+import com.example.carins.service.PolicyWriteService.OnConflict;
+import com.example.carins.web.dto.PolicyDto;
+import com.example.carins.web.dto.PolicyRequestDto;
+import com.example.carins.web.dto.PolicyWriteResultDto;
+import com.example.carins.web.utilities.DateValidator;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+// Policy writes checked against the car's other policies: onConflict=reject (default) answers 409 with the
+// overlapping policies and writes nothing, onConflict=flag writes anyway and lists them. GET returns the version
+// an update has to send back.
+@RestController
+@RequestMapping("/api/cars/{carId}/policies")
+public class PolicyController {
+
+    private static final int MAX_PROVIDER_LENGTH = 255;
+
+    private final PolicyWriteService writeService;
+    private final DateValidator dateValidator;
+
+    public PolicyController(PolicyWriteService writeService, DateValidator dateValidator) {
+        this.writeService = writeService;
+        this.dateValidator = dateValidator;
+    }
+
+    @GetMapping("/{policyId}")
+    public PolicyDto getPolicy(@PathVariable long carId, @PathVariable long policyId) {
+        try {
+            return toPolicyDto(carId, writeService.get(carId, policyId));
+        } catch (PolicyNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @PostMapping
+    public ResponseEntity<PolicyWriteResultDto> createPolicy(@PathVariable long carId,
+                                                             @RequestBody PolicyRequestDto request,
+                                                             @RequestParam(defaultValue = "reject") String onConflict) {
+        OnConflict mode = parseOnConflict(onConflict);
+        String provider = validateProvider(request.provider());
+        LocalDate startDate = dateValidator.validateAndParse(request.startDate());
+        LocalDate endDate = validateEndDate(startDate, request.endDate());
+
+        PolicyWriteService.WriteResult result;
+        try {
+            result = writeService.create(carId, provider, startDate, endDate, mode);
+        } catch (CarNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (PolicyWriteConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        if (result.policy() == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(toResultDto(carId, result));
+        }
+        URI location = ServletUriComponentsBuilder
+                .fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(result.policy().getId())
+                .toUri();
+        return ResponseEntity.created(location).body(toResultDto(carId, result));
+    }
+
+    @PutMapping("/{policyId}")
+    public ResponseEntity<PolicyWriteResultDto> updatePolicy(@PathVariable long carId,
+                                                             @PathVariable long policyId,
+                                                             @RequestBody PolicyRequestDto request,
+                                                             @RequestParam(defaultValue = "reject") String onConflict) {
+        OnConflict mode = parseOnConflict(onConflict);
+        if (request.version() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "version is required: send the version of the policy as last read");
+        }
+        String provider = validateProvider(request.provider());
+        LocalDate startDate = dateValidator.validateAndParse(request.startDate());
+        LocalDate endDate = validateEndDate(startDate, request.endDate());
+
+        PolicyWriteService.WriteResult result;
+        try {
+            result = writeService.update(carId, policyId, request.version(), provider, startDate, endDate, mode);
+        } catch (CarNotFoundException | PolicyNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (PolicyWriteConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        HttpStatus status = result.policy() == null ? HttpStatus.CONFLICT : HttpStatus.OK;
+        return ResponseEntity.status(status).body(toResultDto(carId, result));
+    }
+
+    private static OnConflict parseOnConflict(String onConflict) {
+        try {
+            return OnConflict.valueOf(onConflict.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "onConflict must be 'reject' or 'flag'");
+        }
+    }
+
+    private static String validateProvider(String provider) {
+        if (provider == null || provider.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Provider is required");
+        }
+        if (provider.length() > MAX_PROVIDER_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Provider must not exceed " + MAX_PROVIDER_LENGTH + " characters");
+        }
+        return provider.trim();
+    }
+
+    private LocalDate validateEndDate(LocalDate startDate, String endDate) {
+        LocalDate parsed = dateValidator.validateAndParse(endDate);
+        if (parsed.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'endDate' must not be before 'startDate'");
+        }
+        return parsed;
+    }
+
+    private static PolicyWriteResultDto toResultDto(long carId, PolicyWriteService.WriteResult result) {
+        PolicyDto written = result.policy() == null ? null : toPolicyDto(carId, result.policy());
+        List<PolicyDto> conflicts = result.conflicts().stream()
+                .map(conflict -> toPolicyDto(carId, conflict))
+                .toList();
+        return new PolicyWriteResultDto(written, conflicts);
+    }
+
+    private static PolicyDto toPolicyDto(long carId, InsurancePolicy policy) {
+        return new PolicyDto(policy.getId(), carId, policy.getProvider(), policy.getStartDate(), policy.getEndDate(),
+                policy.getVersion());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.carins.web;
+
+import com.example.carins.config.ReplicaRoutingDataSource;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+/**
+ * Serialized JSON responses keyed by request, each tagged with the ETag it was rendered under. A hit on the
+ * current tag is written out as stored bytes; an entry under an older tag is simply rendered over. The cache is
+ * bounded by total body size and never takes a body above {@code max-entry-bytes}.
+ * <p>
+ * Renders read the primary even when a read replica is configured: a body rendered from a lagging replica would
+ * be stored under the newer tag and served until the next change. Each version is rendered once, so this costs
+ * the primary one read per change.
+ */
+@Component
+public class ResponseCache {
+
+    // nextCursor: the paged car list's cursor, null for every other response
+    public record Entry(String etag, byte[] body, String nextCursor) {
+    }
+
+    private final Cache<String, Entry> entries;
+    private final int maxEntryBytes;
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         @Value("${carins.response-cache.max-bytes:33554432}") long maxBytes,
+                         @Value("${carins.response-cache.max-entry-bytes:1048576}") int maxEntryBytes) {
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> key.length() + entry.body().length)
+                .recordStats()
+                .build();
+        this.maxEntryBytes = maxEntryBytes;
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "responses");
+    }
+
+    // the entry for key under etag, rendering and storing it on a miss; concurrent misses may both render
+    public Entry get(String key, String etag, Supplier<Entry> render) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.etag().equals(etag)) {
+            return entry;
+        }
+        try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+            entry = render.get();
+        }
+        if (entry.body().length <= maxEntryBytes) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    // a streamed body: replays the stored bytes on a hit, otherwise streams and keeps a copy if it stays small
+    public StreamingResponseBody stream(String key, String etag, StreamingResponseBody render) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.etag().equals(etag)) {
+            return out -> out.write(entry.body());
+        }
+        return out -> {
+            Capture capture = new Capture(out, maxEntryBytes);
+            try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+                render.writeTo(capture);
+            }
+            if (capture.copy != null) {
+                entries.put(key, new Entry(etag, capture.copy.toByteArray(), null));
+            }
+        };
+    }
+
+    // passes everything through, keeping a copy until it grows past the limit
+    private static final class Capture extends OutputStream {
+        private final OutputStream out;
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Capture(OutputStream out, int limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null && keep(1)) copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null && keep(len)) copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        private boolean keep(int len) {
+            if (copy.size() + len <= limit) return true;
+            copy = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.carins.web;
+
+import com.example.carins.config.StatementCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Records how many SQL statements Hibernate ran for each /api request and raises a
+// StatementThresholdExceededEvent when a request goes over the threshold, which usually means an N+1.
+// Only the request thread is counted: the body of a streamed response is written after this filter returns.
+@Component
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCountFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int threshold;
+
+    public StatementCountFilter(MeterRegistry meterRegistry,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${carins.metrics.statements.threshold:20}") int threshold) {
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        StatementCounter.start();
+        int statements = 0;
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            statements = StatementCounter.stop();
+        }
+
+        String method = request.getMethod();
+        String uri = uriTemplate(request);
+        DistributionSummary.builder("carins.http.statements")
+                .description("Hibernate SQL statements per request")
+                .baseUnit("statements")
+                .serviceLevelObjectives(1, 2, 5, 10, 20, 50, 100)
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(statements);
+
+        if (statements > threshold) {
+            Counter.builder("carins.http.statements.exceeded")
+                    .description("Requests over the per-request statement threshold")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            logger.warn("{} {} ran {} statements (threshold {})", method, uri, statements, threshold);
+            eventPublisher.publishEvent(new StatementThresholdExceededEvent(method, uri, statements, threshold));
+        }
+    }
+
+    // the mapping pattern keeps the tag cardinality bounded (/api/cars/{carId}/history, not one per id)
+    private static String uriTemplate(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.carins.web;
+
+// Published when a request runs more Hibernate statements than carins.metrics.statements.threshold;
+// add an @EventListener for it to page, sample the request or dump the SQL log
+public record StatementThresholdExceededEvent(String method, String uri, int statements, int threshold) {
+}
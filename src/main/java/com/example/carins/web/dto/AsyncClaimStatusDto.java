@@ -0,0 +1,30 @@
+package com.example.carins.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AsyncClaimStatusDto(
+        long trackingId,
+        Status status,
+        Long claimId,        // set once the claim is WRITTEN
+        String error         // set when the claim was REJECTED by the writer
+) {
+    public enum Status {
+        PENDING,             // accepted into the claim log, not yet in the database
+        WRITTEN,
+        REJECTED,
+        UNKNOWN              // never issued by this node
+    }
+
+    public static AsyncClaimStatusDto of(long trackingId, Status status) {
+        return new AsyncClaimStatusDto(trackingId, status, null, null);
+    }
+
+    public static AsyncClaimStatusDto written(long trackingId, long claimId) {
+        return new AsyncClaimStatusDto(trackingId, Status.WRITTEN, claimId, null);
+    }
+
+    public static AsyncClaimStatusDto rejected(long trackingId, String error) {
+        return new AsyncClaimStatusDto(trackingId, Status.REJECTED, null, error);
+    }
+}
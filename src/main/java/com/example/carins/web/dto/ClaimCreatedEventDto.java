@@ -0,0 +1,8 @@
+package com.example.carins.web.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record ClaimCreatedEventDto(Long claimId, Long carId, String provider, LocalDate claimDate, BigDecimal amount,
+                                   String description) {
+}
@@ -0,0 +1,19 @@
+package com.example.carins.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ClaimImportResultDto(
+        long line,           // 1-based position of the claim in the request body
+        Long carId,
+        Long claimId,
+        String error         // set instead of "claimId" when the claim was rejected
+) {
+    public static ClaimImportResultDto created(long line, Long carId, Long claimId) {
+        return new ClaimImportResultDto(line, carId, claimId, null);
+    }
+
+    public static ClaimImportResultDto rejected(long line, Long carId, String error) {
+        return new ClaimImportResultDto(line, carId, null, error);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.carins.web.dto;
+
+public record ClaimRequestDto(
+        Long carId,
+        String claimDate,
+        String description,
+        String amount
+) {
+}
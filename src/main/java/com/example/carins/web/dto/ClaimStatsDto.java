@@ -0,0 +1,13 @@
+package com.example.carins.web.dto;
+
+import java.math.BigDecimal;
+
+public record ClaimStatsDto(
+        String key,          // car id, provider or yyyy-MM month, depending on the rollup asked for
+        long claimCount,
+        BigDecimal totalAmount
+) {
+    public static ClaimStatsDto empty(String key) {
+        return new ClaimStatsDto(key, 0, BigDecimal.ZERO.setScale(2));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.carins.web.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// the days of the requested range on which no policy covered the car, as inclusive ranges in date order
+public record CoverageGapsDto(Long carId, String vin, List<Gap> gaps) {
+
+    public record Gap(LocalDate from, LocalDate to) {
+    }
+}
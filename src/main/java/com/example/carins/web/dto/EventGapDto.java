@@ -0,0 +1,5 @@
+package com.example.carins.web.dto;
+
+// events with sequence numbers in (after, upTo] were skipped; refetch through the REST API if they matter
+public record EventGapDto(long after, long upTo) {
+}
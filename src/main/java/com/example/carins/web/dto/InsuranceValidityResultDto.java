@@ -0,0 +1,19 @@
+package com.example.carins.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record InsuranceValidityResultDto(
+        Long carId,
+        String date,
+        Boolean valid,
+        String error          // set instead of "valid" when this item could not be checked
+) {
+    public static InsuranceValidityResultDto valid(Long carId, String date, boolean valid) {
+        return new InsuranceValidityResultDto(carId, date, valid, null);
+    }
+
+    public static InsuranceValidityResultDto error(Long carId, String date, String error) {
+        return new InsuranceValidityResultDto(carId, date, null, error);
+    }
+}
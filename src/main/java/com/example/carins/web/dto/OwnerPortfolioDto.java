@@ -0,0 +1,22 @@
+package com.example.carins.web.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// one page of an owner's cars in id order, each with the policies active on activeOn and the claims since
+// claimsSince; the next page is linked from the response headers
+public record OwnerPortfolioDto(Long ownerId, String name, String email, LocalDate activeOn, LocalDate claimsSince,
+                                List<PortfolioCar> cars) {
+
+    // policies in start order, claims newest first
+    public record PortfolioCar(Long id, String vin, String make, String model, int year,
+                               List<ActivePolicy> activePolicies, List<RecentClaim> recentClaims) {
+    }
+
+    public record ActivePolicy(Long id, String provider, LocalDate startDate, LocalDate endDate) {
+    }
+
+    public record RecentClaim(Long id, LocalDate claimDate, String description, BigDecimal amount) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.carins.web.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+// fleet-wide policy figures from one full pass; cars counts cars with at least one dated policy
+public record PolicyAnalyticsDto(Instant computedAt, long elapsedMillis, int partitions, int parallelism,
+                                 long cars, long policies, List<ProviderDuration> providers,
+                                 Overlaps overlaps, RenewalGaps renewalGaps) {
+
+    // durations count both the start and the end day; providers are in name order, "Unknown" for none
+    public record ProviderDuration(String provider, long policies, double averageDays) {
+    }
+
+    // pairs of policies on the same car sharing at least one day
+    public record Overlaps(long cars, long pairs) {
+    }
+
+    // each policy after a car's first, in start order: renewals start the day after all earlier ones ended,
+    // gaps start later than that; the rest overlap an earlier policy
+    public record RenewalGaps(long renewals, long gaps, double averageGapDays, long maxGapDays) {
+    }
+}
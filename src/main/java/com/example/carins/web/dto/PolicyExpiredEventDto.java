@@ -0,0 +1,6 @@
+package com.example.carins.web.dto;
+
+import java.time.LocalDate;
+
+public record PolicyExpiredEventDto(Long policyId, Long carId, String provider, LocalDate endDate) {
+}
@@ -0,0 +1,10 @@
+package com.example.carins.web.dto;
+
+// version: the policy version last read, required on update and ignored on create
+public record PolicyRequestDto(
+        String provider,
+        String startDate,
+        String endDate,
+        Long version
+) {
+}
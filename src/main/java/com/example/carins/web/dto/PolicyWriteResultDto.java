@@ -0,0 +1,7 @@
+package com.example.carins.web.dto;
+
+import java.util.List;
+
+// policy is null when the write was rejected; conflicts lists the car's policies overlapping the requested period
+public record PolicyWriteResultDto(PolicyDto policy, List<PolicyDto> conflicts) {
+}
@@ -4,33 +4,149 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Clock;
 import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
 
+/**
+ * Validates ISO {@code yyyy-MM-dd} dates between 1900-01-01 and 50 years from today. {@link #parseEpochDay}
+ * is the fast path: it reads the characters directly, allocates nothing and reports failures as negative codes
+ * instead of exceptions; {@link #validateAndParse} wraps it for callers that want a {@link LocalDate} or a
+ * 400 response. The upper bound follows the clock, moving on at midnight.
+ */
 @Component
 public class DateValidator {
 
+    // failure codes, below any epoch day in the accepted range
+    public static final int MISSING = Integer.MIN_VALUE;
+    public static final int INVALID_FORMAT = Integer.MIN_VALUE + 1;
+    public static final int OUT_OF_RANGE = Integer.MIN_VALUE + 2;
+
     private static final LocalDate MIN_DATE = LocalDate.of(1900, 1, 1);
-    private static final LocalDate MAX_DATE = LocalDate.now().plusYears(50);
+    private static final int MIN_EPOCH_DAY = (int) MIN_DATE.toEpochDay();
+    private static final int MAX_YEARS_AHEAD = 50;
+    private static final long DAYS_0000_TO_1970 = 719_528;
+
+    private record Window(long validUntilMillis, int maxEpochDay) {
+    }
+
+    private final Clock clock;
+    private volatile Window window = new Window(Long.MIN_VALUE, 0);
+
+    public DateValidator() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public DateValidator(Clock clock) {
+        this.clock = clock;
+    }
+
+    public static boolean isFailure(int epochDayOrCode) {
+        return epochDayOrCode <= OUT_OF_RANGE;
+    }
 
     public LocalDate validateAndParse(String dateString) {
-        if (dateString == null || dateString.trim().isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Date is required");
+        int epochDay = parseEpochDay(dateString);
+        if (isFailure(epochDay)) {
+            throw new InvalidDateException(reason(epochDay));
         }
+        return LocalDate.ofEpochDay(epochDay);
+    }
 
-        LocalDate date;
-        try {
-            date = LocalDate.parse(dateString);
-        } catch (DateTimeParseException e) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    "Invalid date format. Use YYYY-MM-DD");
+    // the epoch day of a valid date, otherwise MISSING, INVALID_FORMAT or OUT_OF_RANGE
+    public int parseEpochDay(String dateString) {
+        if (dateString == null || isBlank(dateString)) return MISSING;
+        if (dateString.length() != 10 || dateString.charAt(4) != '-' || dateString.charAt(7) != '-') {
+            return INVALID_FORMAT;
+        }
+        int year = digits(dateString, 0, 4);
+        int month = digits(dateString, 5, 7);
+        int day = digits(dateString, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID_FORMAT;
+        }
+        int epochDay = (int) toEpochDay(year, month, day);
+        // the bound only moves forward, so a date within the cached one needs no clock read
+        if (epochDay < MIN_EPOCH_DAY || (epochDay > window.maxEpochDay() && epochDay > maxEpochDay())) {
+            return OUT_OF_RANGE;
         }
+        return epochDay;
+    }
+
+    // message for a failure code returned by parseEpochDay
+    public String reason(int code) {
+        return switch (code) {
+            case MISSING -> "Date is required";
+            case INVALID_FORMAT -> "Invalid date format. Use YYYY-MM-DD";
+            case OUT_OF_RANGE -> "Date must be between " + MIN_DATE + " and " + LocalDate.ofEpochDay(maxEpochDay());
+            default -> throw new IllegalArgumentException("Not a failure code: " + code);
+        };
+    }
 
-        if (date.isBefore(MIN_DATE) || date.isAfter(MAX_DATE)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                    String.format("Date must be between %s and %s", MIN_DATE, MAX_DATE));
+    // recomputed once per day
+    private int maxEpochDay() {
+        Window current = window;
+        long now = clock.millis();
+        if (now < current.validUntilMillis()) {
+            return current.maxEpochDay();
         }
+        LocalDate today = LocalDate.now(clock);
+        current = new Window(today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli(),
+                (int) today.plusYears(MAX_YEARS_AHEAD).toEpochDay());
+        window = current;
+        return current.maxEpochDay();
+    }
 
-        return date;
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+
+    // the decimal value of chars [from, to), or -1 if any of them is not a digit
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    // LocalDate.toEpochDay for non-negative years
+    private static long toEpochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) total--;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    // rejections are routine input errors: skip the stack trace, which is most of an exception's cost
+    private static final class InvalidDateException extends ResponseStatusException {
+        InvalidDateException(String reason) {
+            super(HttpStatus.BAD_REQUEST, reason);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.example.carins.web.utilities;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public final class KeysetCursor {
+
+    private static final String PREFIX = "id:";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static long decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (decoded.startsWith(PREFIX)) {
+                return Long.parseLong(decoded.substring(PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to the 400 below; NumberFormatException is an IllegalArgumentException
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
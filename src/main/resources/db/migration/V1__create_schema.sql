@@ -0,0 +1,56 @@
+-- Baseline: the schema Hibernate generated from the entities under ddl-auto=create-drop
+
+create sequence insuranceclaim_seq start with 1 increment by 50;
+
+create table owner (
+    id bigint generated by default as identity,
+    name varchar(255) not null,
+    email varchar(255),
+    primary key (id)
+);
+
+create table car (
+    id bigint generated by default as identity,
+    vin varchar(32) not null,
+    make varchar(255),
+    model varchar(255),
+    year_of_manufacture integer not null,
+    owner_id bigint not null,
+    primary key (id),
+    constraint uk_car_vin unique (vin),
+    constraint fk_car_owner foreign key (owner_id) references owner
+);
+
+create table insurancepolicy (
+    id bigint generated by default as identity,
+    car_id bigint not null,
+    provider varchar(255),
+    start_date date,
+    end_date date not null,
+    primary key (id),
+    constraint fk_insurancepolicy_car foreign key (car_id) references car
+);
+
+create table insuranceclaim (
+    id bigint not null,
+    car_id bigint not null,
+    claim_date date not null,
+    description varchar(1000),
+    amount numeric(10,2) not null,
+    primary key (id),
+    constraint fk_insuranceclaim_car foreign key (car_id) references car
+);
+
+create table expired_policy_logger (
+    id bigint generated by default as identity,
+    policy_id bigint not null,
+    logged_at timestamp(6) not null,
+    primary key (id),
+    constraint uk_expired_policy_logger_policy unique (policy_id)
+);
+
+create table scheduler_watermark (
+    name varchar(255) not null,
+    last_processed_date date not null,
+    primary key (name)
+);
@@ -0,0 +1,11 @@
+-- Indexes for the hot read paths. H2 keeps its own single-column index behind each car_id foreign key;
+-- those only serve equality on car_id, not the date ranges and orderings below.
+
+-- existsActiveOnDate, findByCarId, findHistoryRows, streamAllIntervals (car_id, start_date order)
+create index ix_insurancepolicy_car_dates on insurancepolicy (car_id, start_date, end_date);
+
+-- findExpiredBetween: end_date range for the expired-policy scheduler, id for its (end_date, id) keyset
+create index ix_insurancepolicy_end_date on insurancepolicy (end_date, id);
+
+-- findByCarIdOrderByClaimDateAsc, claim branch of findHistoryRows
+create index ix_insuranceclaim_car_date on insuranceclaim (car_id, claim_date);
@@ -0,0 +1,5 @@
+-- Tracking id of claims written from the asynchronous claim log; unique so a replayed record is inserted once
+
+alter table insuranceclaim add column tracking_id bigint;
+
+alter table insuranceclaim add constraint uk_insuranceclaim_tracking_id unique (tracking_id);
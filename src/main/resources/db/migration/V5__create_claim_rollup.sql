@@ -0,0 +1,32 @@
+-- Claim count and amount totals per car, per provider and per month, kept up to date by ClaimRollupService in
+-- the transaction that writes the claims. rollup_key is the car id, the provider of the policy covering the
+-- claim ('Unknown' when none does) or the claim month as yyyy-MM.
+
+create table claim_rollup (
+    dimension varchar(16) not null,
+    rollup_key varchar(255) not null,
+    claim_count bigint not null,
+    amount_total numeric(19,2) not null,
+    primary key (dimension, rollup_key)
+);
+
+-- same attribution as ClaimRollupReconciler: the covering policy with the latest end date
+insert into claim_rollup (dimension, rollup_key, claim_count, amount_total)
+select 'CAR', cast(car_id as varchar(20)), count(*), sum(amount)
+from insuranceclaim
+group by car_id;
+
+insert into claim_rollup (dimension, rollup_key, claim_count, amount_total)
+select 'PROVIDER', provider, count(*), sum(amount)
+from (select coalesce((select p.provider from insurancepolicy p
+                       where p.car_id = c.car_id and p.start_date <= c.claim_date and p.end_date >= c.claim_date
+                       order by p.end_date desc, p.id desc
+                       fetch first 1 row only), 'Unknown') as provider,
+             c.amount as amount
+      from insuranceclaim c) attributed
+group by provider;
+
+insert into claim_rollup (dimension, rollup_key, claim_count, amount_total)
+select 'MONTH', to_char(claim_date, 'YYYY-MM'), count(*), sum(amount)
+from insuranceclaim
+group by to_char(claim_date, 'YYYY-MM');
@@ -0,0 +1,7 @@
+-- Optimistic versions for policy writes: insurancepolicy.version guards updates of one policy (JPA @Version),
+-- car.policies_version the set of a car's policies. Every write through the policy API bumps the latter with a
+-- compare-and-set, so two nodes adding overlapping policies to one car cannot both pass the overlap check.
+
+alter table insurancepolicy add column version bigint default 0 not null;
+
+alter table car add column policies_version bigint default 0 not null;
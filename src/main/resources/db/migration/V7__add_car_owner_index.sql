@@ -0,0 +1,6 @@
+-- findOwnerCarsAfter: one owner's cars in id order, for the owner portfolio keyset. The foreign key is recreated
+-- so H2 backs it with this index instead of keeping its own owner_id index, which the planner would pick and
+-- then sort the owner's whole fleet on every page.
+create index ix_car_owner on car (owner_id, id);
+alter table car drop constraint fk_car_owner;
+alter table car add constraint fk_car_owner foreign key (owner_id) references owner;
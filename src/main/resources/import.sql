@@ -1,13 +0,0 @@
-INSERT INTO owner (id, name, email) VALUES (1, 'Ana Pop', 'ana.pop@example.com');
-INSERT INTO owner (id, name, email) VALUES (2, 'Bogdan Ionescu', 'bogdan.ionescu@example.com');
-
-INSERT INTO car (id, vin, make, model, year_of_manufacture, owner_id) VALUES (1, 'VIN12345', 'Dacia', 'Logan', 2018, 1);
-INSERT INTO car (id, vin, make, model, year_of_manufacture, owner_id) VALUES (2, 'VIN67890', 'VW', 'Golf', 2021, 2);
-
-INSERT INTO insurancepolicy (id, car_id, provider, start_date, end_date) VALUES (1, 1, 'Allianz', DATE '2024-01-01', DATE '2024-12-31');
-INSERT INTO insurancepolicy (id, car_id, provider, start_date, end_date) VALUES (2, 1, 'Groupama', DATE '2025-01-01', DATE '2026-01-01');
-INSERT INTO insurancepolicy (id, car_id, provider, start_date, end_date) VALUES (3, 2, 'Allianz', DATE '2025-03-01', DATE '2025-09-06');
-
-INSERT INTO insuranceclaim (car_id, claim_date, description, amount) VALUES (1, DATE '2024-05-15', 'Minor collision with another vehicle in parking lot. Damage to rear bumper and taillight.', 850.50);
-INSERT INTO insuranceclaim (car_id, claim_date, description, amount) VALUES (1, DATE '2025-08-22', 'Windshield replacement due to stone chip damage while driving on highway.', 325.00);
-INSERT INTO insuranceclaim (car_id, claim_date, description, amount) VALUES (2, DATE '2025-07-10', 'Side mirror damage from vandalism while parked overnight in residential area.', 180.75);
\ No newline at end of file
@@ -1,20 +1,123 @@
 package com.example.carins;
 
 import com.example.carins.exception.CarNotFoundException;
+import com.example.carins.exception.DuplicateVinException;
 import com.example.carins.exception.InvalidInsuranceException;
+import com.example.carins.config.CacheConfig;
+import com.example.carins.config.ReplicaRoutingDataSource;
+import com.example.carins.config.StatementCounter;
 import com.example.carins.model.Car;
 import com.example.carins.model.InsuranceClaim;
+import com.example.carins.model.InsurancePolicy;
+import com.example.carins.model.Owner;
+import com.example.carins.model.SchedulerWatermark;
+import com.example.carins.repo.CarRepository;
+import com.example.carins.repo.ExpiredPolicyLoggerRepository;
+import com.example.carins.repo.InsuranceClaimRepository;
+import com.example.carins.repo.InsurancePolicyRepository;
+import com.example.carins.repo.OwnerRepository;
+import com.example.carins.repo.SchedulerWatermarkRepository;
+import com.example.carins.service.AsyncClaimWriter;
 import com.example.carins.service.CarService;
+import com.example.carins.service.ClaimRollupReconciler;
+import com.example.carins.service.ClaimRollupService;
+import com.example.carins.service.ClaimRollupService.Dimension;
+import com.example.carins.service.ClaimSubmission;
+import com.example.carins.service.ColumnarWriter;
+import com.example.carins.service.CoverageService;
+import com.example.carins.service.DataVersions;
+import com.example.carins.service.ExpiredPolicyScheduler;
+import com.example.carins.service.ExportService;
+import com.example.carins.service.FleetEvent;
+import com.example.carins.service.FleetEventStream;
+import com.example.carins.service.InsuranceCheck;
+import com.example.carins.service.OwnerPortfolioService;
+import com.example.carins.service.PolicyIndexSnapshot;
+import com.example.carins.service.PolicyAnalyticsService;
+import com.example.carins.service.PolicyIntervalIndex;
+import com.example.carins.service.PolicyWriteService;
+import com.example.carins.service.VinIndex;
+import com.example.carins.web.CarController;
+import com.example.carins.web.OwnerController;
+import com.example.carins.web.PolicyController;
+import com.example.carins.web.StatementCountFilter;
+import com.example.carins.web.StatementThresholdExceededEvent;
+import com.example.carins.web.dto.AsyncClaimStatusDto;
+import com.example.carins.web.dto.CarDto;
 import com.example.carins.web.dto.CarHistoryEventDto;
+import com.example.carins.web.dto.ClaimCreatedEventDto;
+import com.example.carins.web.dto.ClaimStatsDto;
+import com.example.carins.web.dto.CoverageGapsDto;
+import com.example.carins.web.dto.UninsuredCarDto;
+import com.example.carins.web.dto.ClaimImportResultDto;
+import com.example.carins.web.dto.InsuranceValidityResultDto;
+import com.example.carins.web.dto.OwnerPortfolioDto;
+import com.example.carins.web.dto.PolicyAnalyticsDto;
+import com.example.carins.web.dto.PolicyDto;
+import com.example.carins.web.dto.PolicyExpiredEventDto;
+import com.example.carins.web.dto.PolicyRequestDto;
+import com.example.carins.web.dto.PolicyWriteResultDto;
 import com.example.carins.web.utilities.DateValidator;
+import com.example.carins.web.utilities.KeysetCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.server.ResponseStatusException;
 
+import jakarta.persistence.EntityManagerFactory;
+
+import javax.cache.CacheManager;
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -174,5 +277,1199 @@ class CarInsuranceApplicationTests {
         assertThrows(ResponseStatusException.class,
                 () -> validator.validateAndParse("not-a-date"));
     }
-}
 
+    @Test
+    void epochDayParserAgreesWithLocalDate() {
+        for (LocalDate date = LocalDate.of(1900, 1, 1); date.getYear() < 2070; date = date.plusDays(1)) {
+            assertEquals(date.toEpochDay(), validator.parseEpochDay(date.toString()));
+        }
+        for (String bad : List.of("2023-02-29", "2024-04-31", "2024-13-01", "2024-00-10", "2024-06-00",
+                "2024-06-1x", "2024-06-15 ", " 2024-06-15", "+2024-06-15", "2024-06-150")) {
+            assertEquals(DateValidator.INVALID_FORMAT, validator.parseEpochDay(bad), bad);
+        }
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), validator.parseEpochDay("2024-02-29"));
+        assertEquals(DateValidator.MISSING, validator.parseEpochDay(" \t"));
+        assertEquals(DateValidator.OUT_OF_RANGE, validator.parseEpochDay("1899-12-31"));
+    }
+
+    @Test
+    void dateWindowRollsOverWithTheClock() {
+        ZoneId zone = ZoneId.of("Europe/Bucharest");
+        Instant[] now = {LocalDate.of(2025, 3, 10).atTime(23, 59).atZone(zone).toInstant()};
+        DateValidator rolling = new DateValidator(new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return zone;
+            }
+
+            @Override
+            public Clock withZone(ZoneId other) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return now[0];
+            }
+        });
+
+        assertEquals(LocalDate.of(2075, 3, 10), rolling.validateAndParse("2075-03-10"));
+        ResponseStatusException tooLate = assertThrows(ResponseStatusException.class,
+                () -> rolling.validateAndParse("2075-03-11"));
+        assertEquals("Date must be between 1900-01-01 and 2075-03-10", tooLate.getReason());
+
+        now[0] = now[0].plusSeconds(60);
+        assertEquals(LocalDate.of(2075, 3, 11), rolling.validateAndParse("2075-03-11"));
+    }
+
+    @Autowired
+    PolicyIntervalIndex policyIndex;
+
+    @Autowired
+    InsurancePolicyRepository policyRepository;
+
+    @Autowired
+    CarRepository carRepository;
+
+    @Test
+    void policyIndexMatchesDatabase() {
+        assertTrue(policyIndex.isReady());
+        for (String date : List.of("2023-12-31", "2024-01-01", "2024-12-31", "2025-01-01", "2025-03-01", "2025-09-07")) {
+            LocalDate day = LocalDate.parse(date);
+            for (long carId : List.of(1L, 2L)) {
+                assertEquals(policyRepository.existsActiveOnDate(carId, day), policyIndex.isActiveOn(carId, day),
+                        "car " + carId + " on " + date);
+            }
+        }
+    }
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void policyIndexSnapshotRestoresAcrossRestart(@TempDir Path dir) throws Exception {
+        Path snapshot = dir.resolve("policy-index.snapshot");
+        PolicyIntervalIndex first = new PolicyIntervalIndex(carRepository, policyRepository, transactionManager,
+                true, snapshot.toString(), false);
+        first.warmUp();
+
+        PolicyIndexSnapshot.Contents contents = PolicyIndexSnapshot.read(snapshot, false);
+        assertNotNull(contents);
+        assertEquals(carRepository.count(), contents.fingerprint().cars());
+        assertEquals(carRepository.count(), contents.store().cars());
+        assertEquals(policyRepository.count(), contents.store().policies());
+
+        // restarted with the columns off the heap
+        PolicyIntervalIndex restarted = new PolicyIntervalIndex(carRepository, policyRepository, transactionManager,
+                true, snapshot.toString(), true);
+        restarted.warmUp();
+        assertTrue(restarted.isReady());
+        for (String date : List.of("2023-12-31", "2024-06-01", "2025-01-01", "2025-09-07")) {
+            LocalDate day = LocalDate.parse(date);
+            for (long carId : List.of(1L, 2L)) {
+                assertEquals(policyRepository.existsActiveOnDate(carId, day), restarted.isActiveOn(carId, day),
+                        "car " + carId + " on " + date);
+            }
+        }
+
+        // a date edit leaves counts and ids alone but still makes the snapshot stale: the restart loads instead
+        LocalDate extended = LocalDate.parse("2025-09-07");
+        InsurancePolicy policy = policyRepository.findById(3L).orElseThrow();
+        LocalDate endDate = policy.getEndDate();
+        policy.setEndDate(extended);
+        policyRepository.save(policy);
+        try {
+            PolicyIntervalIndex edited = new PolicyIntervalIndex(carRepository, policyRepository, transactionManager,
+                    true, snapshot.toString(), false);
+            edited.warmUp();
+            assertTrue(edited.isActiveOn(2L, extended));
+        } finally {
+            InsurancePolicy restored = policyRepository.findById(3L).orElseThrow();
+            restored.setEndDate(endDate);
+            policyRepository.save(restored);
+        }
+    }
+
+    @Test
+    void policyStoreAttributesHistoryLikeTheDatabase() {
+        PolicyIntervalIndex offHeap = new PolicyIntervalIndex(carRepository, policyRepository, transactionManager,
+                true, "", true);
+        offHeap.warmUp();
+        PolicyIntervalIndex disabled = new PolicyIntervalIndex(carRepository, policyRepository, transactionManager,
+                false, "", false);
+        disabled.warmUp();
+        CarService fromStore = new CarService(carRepository, policyRepository, claimRepository, offHeap,
+                claimRollupService, vinIndex, transactionManager);
+        CarService fromDatabase = new CarService(carRepository, policyRepository, claimRepository, disabled,
+                claimRollupService, vinIndex, transactionManager);
+
+        assertTrue(offHeap.policiesOf(1L).stream().anyMatch(p -> "Groupama".equals(p.provider())));
+        for (long carId : List.of(1L, 2L)) {
+            assertEquals(fromDatabase.getCarHistory(carId), fromStore.getCarHistory(carId), "car " + carId);
+            assertEquals(fromDatabase.getCarHistory(carId, LocalDate.parse("2025-01-01"), LocalDate.parse("2025-06-30"), 3),
+                    fromStore.getCarHistory(carId, LocalDate.parse("2025-01-01"), LocalDate.parse("2025-06-30"), 3),
+                    "car " + carId + " in 2025");
+        }
+    }
+
+    @Test
+    void policyIndexFollowsPolicyWrites() {
+        LocalDate date = LocalDate.parse("2040-06-01");
+        assertFalse(service.isInsuranceValid(2L, date));
+
+        InsurancePolicy policy = policyRepository.save(new InsurancePolicy(carRepository.getReferenceById(2L),
+                "Generali", LocalDate.parse("2040-01-01"), LocalDate.parse("2040-12-31")));
+        assertTrue(service.isInsuranceValid(2L, date));
+
+        policyRepository.delete(policy);
+        assertFalse(service.isInsuranceValid(2L, date));
+    }
+
+    @Test
+    void batchValidityKeepsInputOrderAndReportsErrorsPerItem() {
+        List<InsuranceValidityResultDto> results = service.checkInsuranceValidity(List.of(
+                new InsuranceCheck(1L, LocalDate.parse("2024-06-01")),
+                new InsuranceCheck(999L, LocalDate.parse("2024-06-01")),
+                new InsuranceCheck(2L, LocalDate.parse("2025-02-01")),
+                new InsuranceCheck(2L, LocalDate.parse("2025-04-01"))));
+
+        assertEquals(4, results.size());
+        assertEquals(Boolean.TRUE, results.get(0).valid());
+        assertNull(results.get(1).valid());
+        assertNotNull(results.get(1).error());
+        assertEquals(Boolean.FALSE, results.get(2).valid());
+        assertEquals(Boolean.TRUE, results.get(3).valid());
+    }
+
+    @Test
+    void listCarsAfterSeeksById() {
+        List<CarDto> first = service.listCarsAfter(0, 1);
+        assertEquals(1, first.size());
+        assertEquals(1L, first.get(0).id());
+        assertEquals("Ana Pop", first.get(0).ownerName());
+
+        long afterId = KeysetCursor.decode(KeysetCursor.encode(first.get(0).id()));
+        List<CarDto> next = service.listCarsAfter(afterId, 1);
+        assertEquals(2L, next.get(0).id());
+
+        assertThrows(ResponseStatusException.class, () -> KeysetCursor.decode("not-a-cursor"));
+    }
+
+    @Test
+    void carHistoryAttributesClaimsAndHonoursRangeAndLimit() {
+        List<CarHistoryEventDto> history = service.getCarHistory(1L);
+        CarHistoryEventDto windshield = history.stream()
+                .filter(e -> e.eventType().equals("INSURANCE_CLAIM") && e.date().equals(LocalDate.parse("2025-08-22")))
+                .findFirst().orElseThrow();
+        assertEquals("Groupama", windshield.provider());
+
+        List<CarHistoryEventDto> in2025 = service.getCarHistory(1L,
+                LocalDate.parse("2025-01-01"), LocalDate.parse("2025-12-31"), null);
+        assertTrue(in2025.stream().allMatch(e -> e.date().getYear() == 2025));
+        assertTrue(in2025.stream().anyMatch(e -> e.eventType().equals("INSURANCE_CLAIM")));
+
+        List<CarHistoryEventDto> latest = service.getCarHistory(1L, null, null, 1);
+        assertEquals(1, latest.size());
+        assertEquals(history.get(0), latest.get(0));
+    }
+
+    @Test
+    void carHistoryKeepsStartsThenEndsThenClaimsWithinADay() {
+        List<InsuranceClaim> claims = List.of(
+                service.registerClaim(2L, LocalDate.parse("2025-03-01"), "Dented on day one", new BigDecimal("120.00")),
+                service.registerClaim(2L, LocalDate.parse("2025-09-06"), "Mirror on the last day", new BigDecimal("80.00")));
+        try {
+            // other tests add claims to car 2, so only the two days are compared
+            List<String> history = service.getCarHistory(2L).stream()
+                    .filter(e -> e.date().equals(LocalDate.parse("2025-03-01"))
+                            || e.date().equals(LocalDate.parse("2025-09-06")))
+                    .map(e -> e.date() + " " + e.eventType()).toList();
+            assertEquals(List.of(
+                    "2025-09-06 INSURANCE_POLICY_END",
+                    "2025-09-06 INSURANCE_CLAIM",
+                    "2025-03-01 INSURANCE_POLICY_START",
+                    "2025-03-01 INSURANCE_CLAIM"), history);
+
+            assertEquals(service.getCarHistory(2L).subList(0, 2), service.getCarHistory(2L, null, null, 2));
+            assertEquals(service.getCarHistory(2L).subList(0, 4), service.getCarHistory(2L, null, null, 4));
+        } finally {
+            claimRepository.deleteAll(claims);
+        }
+    }
+
+    @Autowired
+    ExpiredPolicyScheduler expiredPolicyScheduler;
+
+    @Autowired
+    SchedulerWatermarkRepository watermarkRepository;
+
+    @Autowired
+    ExpiredPolicyLoggerRepository expiredPolicyLoggerRepository;
+
+    @Test
+    void expiredPolicySchedulerCatchesUpFromWatermark() {
+        LocalDate today = LocalDate.now();
+        InsurancePolicy policy = policyRepository.save(new InsurancePolicy(carRepository.getReferenceById(2L),
+                "Omniasig", today.minusDays(30), today.minusDays(4)));
+        watermarkRepository.save(new SchedulerWatermark(ExpiredPolicyScheduler.WATERMARK, today.minusDays(7)));
+
+        expiredPolicyScheduler.logExpiredPolicies();
+        assertTrue(expiredPolicyLoggerRepository.existsByPolicyId(policy.getId()));
+        assertEquals(today.minusDays(1),
+                watermarkRepository.findById(ExpiredPolicyScheduler.WATERMARK).orElseThrow().getLastProcessedDate());
+
+        long logged = expiredPolicyLoggerRepository.count();
+        watermarkRepository.save(new SchedulerWatermark(ExpiredPolicyScheduler.WATERMARK, today.minusDays(7)));
+        expiredPolicyScheduler.logExpiredPolicies();
+        assertEquals(logged, expiredPolicyLoggerRepository.count());
+
+        policyRepository.delete(policy);
+    }
+
+    @Test
+    void registerClaimsReportsResultPerLine() {
+        String description = "Hail damage on the roof and hood";
+        List<ClaimImportResultDto> results = service.registerClaims(List.of(
+                new ClaimSubmission(1, 1L, LocalDate.parse("2024-07-01"), description, new BigDecimal("1200.50")),
+                new ClaimSubmission(2, 2L, LocalDate.parse("2025-02-01"), description, new BigDecimal("900.00")),
+                new ClaimSubmission(3, 999L, LocalDate.parse("2025-02-01"), description, new BigDecimal("900.00")),
+                new ClaimSubmission(4, 2L, LocalDate.parse("2025-04-01"), description, new BigDecimal("300.00"))));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), results.stream().map(ClaimImportResultDto::line).toList());
+        assertNotNull(results.get(0).claimId());
+        assertNotNull(results.get(1).error());
+        assertNotNull(results.get(2).error());
+        assertNotNull(results.get(3).claimId());
+        assertNotEquals(results.get(0).claimId(), results.get(3).claimId());
+    }
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void carLookupsAreServedFromCacheAndInvalidatedOnWrite() {
+        assertTrue(carRepository.findByVin("VINCACHE01").isEmpty());
+
+        double hits = cacheHits(CacheConfig.CAR_REGION);
+        carRepository.findById(1L);
+        carRepository.findById(1L);
+        assertTrue(cacheHits(CacheConfig.CAR_REGION) > hits);
+
+        Owner owner = carRepository.findById(1L).orElseThrow().getOwner();
+        Car saved = service.saveCar(new Car("VINCACHE01", "Skoda", "Octavia", 2022, owner));
+        assertEquals(saved.getId(), carRepository.findByVin("VINCACHE01").orElseThrow().getId());
+    }
+
+    private double cacheHits(String cache) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", "hit").functionCounter().count();
+    }
+
+    @Test
+    void anotherContextGetsItsOwnHibernateCacheManager() {
+        // the regions this context created must not clash with those of a second context in the same JVM
+        try (CacheManager other = new CacheConfig().hibernateCacheManager(new SimpleMeterRegistry(),
+                10, Duration.ofMinutes(1), 10, Duration.ofMinutes(1))) {
+            assertNotNull(other.getCache(CacheConfig.CAR_REGION));
+            assertNull(other.getCache(CacheConfig.CAR_REGION).get(1L));
+        }
+    }
+
+    @Test
+    void statementCountFilterRecordsPerRequestAndRaisesThresholdEvent() throws Exception {
+        List<Object> events = new ArrayList<>();
+        StatementCountFilter filter = new StatementCountFilter(meterRegistry, events::add, 0);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cars/1/history");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/cars/{carId}/history");
+            service.getCarHistory(1L);
+        });
+
+        DistributionSummary statements = meterRegistry.get("carins.http.statements")
+                .tag("uri", "/api/cars/{carId}/history").summary();
+        assertTrue(statements.count() >= 1);
+        assertTrue(statements.max() >= 1);
+        assertEquals(1, events.size());
+        assertInstanceOf(StatementThresholdExceededEvent.class, events.get(0));
+
+        assertTrue(meterRegistry.find("spring.data.repository.invocations")
+                .tag("repository", "CarRepository").timers().size() > 0);
+        assertNotNull(meterRegistry.find("carins.db.pool.saturation").gauge());
+    }
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrationsIndexPolicyAndClaimLookups() {
+        String activePlan = jdbcTemplate.queryForObject("explain select count(*) from insurancepolicy " +
+                "where car_id = 1 and start_date <= date '2025-01-01' and end_date >= date '2025-01-01'", String.class);
+        assertTrue(activePlan.contains("IX_INSURANCEPOLICY_CAR_DATES"), activePlan);
+
+        String expiredPlan = jdbcTemplate.queryForObject("explain select id from insurancepolicy " +
+                "where end_date > date '2025-01-01' and end_date <= date '2025-01-02' order by end_date, id", String.class);
+        assertTrue(expiredPlan.contains("IX_INSURANCEPOLICY_END_DATE"), expiredPlan);
+
+        String claimsPlan = jdbcTemplate.queryForObject("explain select id from insuranceclaim " +
+                "where car_id = 1 order by claim_date", String.class);
+        assertTrue(claimsPlan.contains("IX_INSURANCECLAIM_CAR_DATE"), claimsPlan);
+    }
+
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    InsuranceClaimRepository claimRepository;
+
+    @Test
+    void claimExportWritesColumnarRowGroups() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = exportService.exportClaims(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(ColumnarWriter.MAGIC, in.readInt());
+        assertEquals(ColumnarWriter.VERSION, in.readShort());
+        assertEquals("insuranceclaim", in.readUTF());
+        assertEquals(5, in.readShort());
+        List<String> names = new ArrayList<>();
+        for (int c = 0; c < 5; c++) {
+            names.add(in.readUTF());
+            if (in.readByte() == ColumnarWriter.Type.DECIMAL64.code) {
+                assertEquals(ExportService.AMOUNT_SCALE, in.readByte());
+            }
+        }
+        assertEquals(List.of("id", "car_id", "claim_date", "amount", "description"), names);
+
+        int rows = in.readInt();
+        assertEquals(exported, rows);
+        long[] ids = new long[rows];
+        assertFalse(in.readBoolean());
+        for (int r = 0; r < rows; r++) ids[r] = in.readLong();
+        assertFalse(in.readBoolean());
+        for (int r = 0; r < rows; r++) in.readLong();
+        assertFalse(in.readBoolean());
+        int firstDay = in.readInt();
+        for (int r = 1; r < rows; r++) in.readInt();
+        assertFalse(in.readBoolean());
+        long firstAmount = in.readLong();
+
+        InsuranceClaim first = claimRepository.findById(ids[0]).orElseThrow();
+        assertEquals(first.getClaimDate().toEpochDay(), firstDay);
+        assertEquals(first.getAmount().movePointRight(ExportService.AMOUNT_SCALE).longValueExact(), firstAmount);
+    }
+
+    @Test
+    void asyncClaimsAreWrittenBehindAndResumedAfterRestart(@TempDir Path dir) throws Exception {
+        LocalDate covered = LocalDate.parse("2024-06-01");
+        AsyncClaimWriter first = asyncClaimWriter(dir);
+        first.start();
+        List<Long> trackingIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            trackingIds.add(first.submit(1L, covered, "Hail damage on roof and bonnet " + i, new BigDecimal("100.25")));
+        }
+        assertThrows(InvalidInsuranceException.class,
+                () -> first.submit(2L, covered, "Hail damage on an uninsured car", BigDecimal.TEN));
+        first.stop();
+
+        AsyncClaimWriter restarted = asyncClaimWriter(dir);
+        restarted.start();
+        long next = restarted.submit(1L, covered, "Hail damage after the restart", new BigDecimal("55.50"));
+        assertEquals(trackingIds.get(trackingIds.size() - 1) + 1, next);
+        trackingIds.add(next);
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (restarted.status(next).status() != AsyncClaimStatusDto.Status.WRITTEN && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        for (long trackingId : trackingIds) {
+            assertEquals(AsyncClaimStatusDto.Status.WRITTEN, restarted.status(trackingId).status(), "claim " + trackingId);
+        }
+        assertEquals(trackingIds.size(), claimRepository.findByTrackingIdIn(trackingIds).size());
+        assertEquals(AsyncClaimStatusDto.Status.UNKNOWN, restarted.status(next + 1).status());
+        restarted.stop();
+    }
+
+    @Test
+    void asyncClaimTrackingIdsStayUniqueAcrossNodesAndLostLogs(@TempDir Path dir) throws Exception {
+        LocalDate covered = LocalDate.parse("2024-06-01");
+        AsyncClaimWriter first = asyncClaimWriter(dir.resolve("first"));
+        first.start();
+        long before = first.submit(1L, covered, "Hail damage before the log was lost", new BigDecimal("70.00"));
+        awaitStatus(first, before, AsyncClaimStatusDto.Status.WRITTEN);
+        first.stop();
+
+        // an empty log directory: a wiped disk; a second node with its own node id; and a second node
+        // misconfigured with the same one
+        AsyncClaimWriter lost = asyncClaimWriter(dir.resolve("lost"));
+        AsyncClaimWriter other = asyncClaimWriter(dir.resolve("other"), jdbcTemplate, 1);
+        AsyncClaimWriter twin = asyncClaimWriter(dir.resolve("twin"));
+        lost.start();
+        other.start();
+        twin.start();
+        try {
+            assertEquals(AsyncClaimStatusDto.Status.WRITTEN, lost.status(before).status());
+            long after = lost.submit(1L, covered, "Hail damage after the log was lost", new BigDecimal("80.00"));
+            assertTrue(after > before);
+            AsyncClaimStatusDto written = awaitStatus(lost, after, AsyncClaimStatusDto.Status.WRITTEN);
+            assertEquals("Hail damage after the log was lost",
+                    claimRepository.findById(written.claimId()).orElseThrow().getDescription());
+
+            long elsewhere = other.submit(1L, covered, "Hail damage on the other node", new BigDecimal("90.00"));
+            assertEquals((1L << AsyncClaimWriter.SEQUENCE_BITS) + 1, elsewhere);
+            awaitStatus(other, elsewhere, AsyncClaimStatusDto.Status.WRITTEN);
+            assertEquals(AsyncClaimStatusDto.Status.UNKNOWN, other.status(after).status());
+
+            // the twin started from the same highest id, so it issues the same one for another claim: that record
+            // is rejected and the writer moves on to the next
+            long clash = twin.submit(1L, covered, "Hail damage on the misconfigured node", new BigDecimal("95.00"));
+            assertEquals(after, clash);
+            long next = twin.submit(1L, covered, "Hail damage after the clash", new BigDecimal("96.00"));
+            awaitStatus(twin, next, AsyncClaimStatusDto.Status.WRITTEN);
+            assertEquals(AsyncClaimStatusDto.Status.REJECTED, twin.status(clash).status());
+            assertEquals(written.claimId(), lost.status(after).claimId());
+        } finally {
+            lost.stop();
+            other.stop();
+            twin.stop();
+        }
+    }
+
+    private static AsyncClaimStatusDto awaitStatus(AsyncClaimWriter writer, long trackingId,
+                                                   AsyncClaimStatusDto.Status expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (writer.status(trackingId).status() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        AsyncClaimStatusDto status = writer.status(trackingId);
+        assertEquals(expected, status.status(), "claim " + trackingId);
+        return status;
+    }
+
+    @Test
+    void asyncClaimCheckpointWaitsForTheDatabaseToSync(@TempDir Path dir) throws Exception {
+        Path checkpoint = dir.resolve("checkpoint");
+        List<String> checkpointsAtSync = new ArrayList<>();
+        JdbcTemplate recording = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public void execute(String sql) {
+                try {
+                    String current = Files.exists(checkpoint) ? Files.readString(checkpoint) : "none";
+                    checkpointsAtSync.add(sql + " at " + current);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                super.execute(sql);
+            }
+        };
+        AsyncClaimWriter writer = asyncClaimWriter(dir, recording, 0);
+        writer.start();
+        long trackingId;
+        try {
+            trackingId = writer.submit(1L, LocalDate.parse("2024-06-01"), "Flooded footwell", new BigDecimal("410.00"));
+            awaitStatus(writer, trackingId, AsyncClaimStatusDto.Status.WRITTEN);
+        } finally {
+            writer.stop();
+        }
+        // the checkpoint was still behind the claim when the database was told to sync it
+        assertEquals(List.of("CHECKPOINT SYNC at none"), checkpointsAtSync);
+        assertEquals(Long.toString(trackingId), Files.readString(checkpoint));
+    }
+
+    private AsyncClaimWriter asyncClaimWriter(Path dir) {
+        return asyncClaimWriter(dir, jdbcTemplate, 0);
+    }
+
+    private AsyncClaimWriter asyncClaimWriter(Path dir, JdbcTemplate jdbc, int nodeId) {
+        // small segments so the run rolls over and deletes several of them
+        return new AsyncClaimWriter(service, carRepository, claimRepository, claimRollupService, transactionManager,
+                jdbc, meterRegistry,
+                true, dir.toString(), 1024, false, 7, 1000, nodeId);
+    }
+
+    @Autowired
+    ClaimRollupService claimRollupService;
+
+    @Autowired
+    ClaimRollupReconciler claimRollupReconciler;
+
+    @Test
+    void claimRollupsFollowClaimWritesAndReconcileDrift() {
+        claimRollupReconciler.reconcile();
+        ClaimStatsDto car = claimRollupService.find(Dimension.CAR, "2");
+        ClaimStatsDto provider = claimRollupService.find(Dimension.PROVIDER, "Allianz");
+        ClaimStatsDto month = claimRollupService.find(Dimension.MONTH, "2025-04");
+
+        service.registerClaim(2L, LocalDate.parse("2025-04-10"), "Cracked headlight after a car wash", new BigDecimal("99.90"));
+        assertStats(car, 1, "99.90", claimRollupService.find(Dimension.CAR, "2"));
+        assertStats(provider, 1, "99.90", claimRollupService.find(Dimension.PROVIDER, "Allianz"));
+        assertStats(month, 1, "99.90", claimRollupService.find(Dimension.MONTH, "2025-04"));
+        assertEquals(0, claimRollupReconciler.reconcile());
+
+        assertEquals(ClaimStatsDto.empty("1999-01"), claimRollupService.find(Dimension.MONTH, "1999-01"));
+        assertTrue(claimRollupService.list(Dimension.MONTH, "2025-04", "2025-04").stream()
+                .allMatch(stats -> stats.key().equals("2025-04")));
+
+        ClaimStatsDto drifted = claimRollupService.find(Dimension.CAR, "2");
+        jdbcTemplate.update("update claim_rollup set claim_count = claim_count + 5 where dimension = 'CAR' and rollup_key = '2'");
+        jdbcTemplate.update("delete from claim_rollup where dimension = 'PROVIDER' and rollup_key = 'Allianz'");
+        jdbcTemplate.update("insert into claim_rollup values ('PROVIDER', 'Nobody', 3, 10.00)");
+        assertEquals(3, claimRollupReconciler.reconcile());
+        assertEquals(drifted, claimRollupService.find(Dimension.CAR, "2"));
+        assertStats(provider, 1, "99.90", claimRollupService.find(Dimension.PROVIDER, "Allianz"));
+        assertTrue(claimRollupService.list(Dimension.PROVIDER, null, null).stream()
+                .noneMatch(stats -> stats.key().equals("Nobody")));
+    }
+
+    private static void assertStats(ClaimStatsDto before, long addedClaims, String addedAmount, ClaimStatsDto after) {
+        assertEquals(before.claimCount() + addedClaims, after.claimCount());
+        assertEquals(0, before.totalAmount().add(new BigDecimal(addedAmount)).compareTo(after.totalAmount()));
+    }
+
+    @Autowired
+    VinIndex vinIndex;
+
+    @Test
+    void concurrentRegistrationsOfCollidingVinsCreateOneCarEach() throws Exception {
+        try {
+            Owner owner = carRepository.findById(1L).orElseThrow().getOwner();
+            int threads = 16;
+            int vins = 25;
+            AtomicInteger created = new AtomicInteger();
+            AtomicInteger duplicates = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    workers.add(pool.submit(() -> {
+                        start.await();
+                        for (int v = 0; v < vins; v++) {
+                            // every thread spells the VIN differently; they all normalize to the same one
+                            String vin = thread % 2 == 0 ? "STRESS" + v : " stress" + v + " ";
+                            try {
+                                service.saveCar(new Car(vin, "Dacia", "Duster", 2023, owner));
+                                created.incrementAndGet();
+                            } catch (DuplicateVinException e) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            assertEquals(vins, created.get());
+            assertEquals(vins * (threads - 1), duplicates.get());
+            assertEquals(vins, jdbcTemplate.queryForObject("select count(*) from car where vin like 'STRESS%'", Integer.class));
+            for (int v = 0; v < vins; v++) {
+                CarDto car = service.findCarByVin("stress" + v).orElseThrow();
+                assertEquals(car.id(), vinIndex.find("STRESS" + v));
+            }
+
+            // a row the index never saw is still refused, by the unique constraint
+            jdbcTemplate.update("insert into car (vin, make, model, year_of_manufacture, owner_id) " +
+                    "values ('BEHINDBACK1', 'Ford', 'Focus', 2015, 1)");
+            assertThrows(DuplicateVinException.class,
+                    () -> service.saveCar(new Car("behindback1", "Ford", "Focus", 2015, owner)));
+            assertNull(vinIndex.find("BEHINDBACK1"));
+
+            // a load that finds the car while a registration holds its VIN keeps it once the registration gives up
+            assertTrue(vinIndex.reserve("BEHINDBACK1"));
+            vinIndex.load();
+            vinIndex.releaseAfterCompletion("BEHINDBACK1");
+            assertEquals(jdbcTemplate.queryForObject("select id from car where vin = 'BEHINDBACK1'", Long.class),
+                    vinIndex.find("BEHINDBACK1"));
+            assertFalse(vinIndex.reserve("BEHINDBACK1"));
+        } finally {
+            carRepository.deleteAll(carRepository.findAll().stream()
+                    .filter(car -> car.getVin().startsWith("STRESS") || car.getVin().equals("BEHINDBACK1")).toList());
+        }
+    }
+
+    @Autowired
+    CoverageService coverageService;
+
+    @Test
+    void coverageQueriesFindUninsuredCarsAndGaps() throws Exception {
+        Owner owner = carRepository.findById(1L).orElseThrow().getOwner();
+        Car car = service.saveCar(new Car("COVERAGE01", "Renault", "Clio", 2019, owner));
+        List<InsurancePolicy> policies = new ArrayList<>();
+        try {
+            policies.add(policyRepository.save(new InsurancePolicy(car, "Allianz",
+                    LocalDate.parse("2024-01-01"), LocalDate.parse("2024-03-31"))));
+            policies.add(policyRepository.save(new InsurancePolicy(car, "Groupama",
+                    LocalDate.parse("2024-03-15"), LocalDate.parse("2024-06-30"))));
+            policies.add(policyRepository.save(new InsurancePolicy(car, "Allianz",
+                    LocalDate.parse("2024-08-01"), LocalDate.parse("2024-12-31"))));
+
+            List<UninsuredCarDto> uninsured = new ArrayList<>();
+            coverageService.streamUninsured(LocalDate.parse("2024-07-15"), List.of(1L, car.getId()), uninsured::add);
+            assertEquals(List.of(new UninsuredCarDto(car.getId(), "COVERAGE01")), uninsured);
+
+            List<UninsuredCarDto> fleet = new ArrayList<>();
+            coverageService.streamUninsured(LocalDate.parse("2024-07-15"), null, fleet::add);
+            assertTrue(fleet.contains(uninsured.get(0)));
+            assertTrue(fleet.stream().noneMatch(c -> c.carId() == 1L));
+            for (int i = 1; i < fleet.size(); i++) {
+                assertTrue(fleet.get(i - 1).carId() < fleet.get(i).carId());
+            }
+
+            List<CoverageGapsDto> gaps = new ArrayList<>();
+            coverageService.streamGaps(LocalDate.parse("2023-12-01"), LocalDate.parse("2025-01-15"), List.of(car.getId()), gaps::add);
+            assertEquals(1, gaps.size());
+            assertEquals(List.of(
+                    new CoverageGapsDto.Gap(LocalDate.parse("2023-12-01"), LocalDate.parse("2023-12-31")),
+                    new CoverageGapsDto.Gap(LocalDate.parse("2024-07-01"), LocalDate.parse("2024-07-31")),
+                    new CoverageGapsDto.Gap(LocalDate.parse("2025-01-01"), LocalDate.parse("2025-01-15"))), gaps.get(0).gaps());
+
+            List<CoverageGapsDto> covered = new ArrayList<>();
+            coverageService.streamGaps(LocalDate.parse("2024-02-01"), LocalDate.parse("2024-06-30"), List.of(car.getId()), covered::add);
+            assertTrue(covered.isEmpty());
+        } finally {
+            policyRepository.deleteAll(policies);
+            carRepository.delete(car);
+        }
+    }
+
+    @Autowired
+    CarController carController;
+
+    @Autowired
+    DataVersions dataVersions;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void carEndpointsAnswerMatchingEtagsWithoutQueries() throws Exception {
+        try {
+            ResponseEntity<byte[]> history = carController.getCarHistory(1L, null, null, null, webRequest(null).request());
+            String etag = history.getHeaders().getETag();
+            assertNotNull(etag);
+            assertArrayEquals(objectMapper.writeValueAsBytes(service.getCarHistory(1L)), history.getBody());
+
+            // a matching tag is answered before any query, a repeat without one from the cached bytes
+            Exchange revalidation = webRequest(etag);
+            StatementCounter.start();
+            assertNull(carController.getCarHistory(1L, null, null, null, revalidation.request()));
+            ResponseEntity<byte[]> repeat = carController.getCarHistory(1L, null, null, null, webRequest(null).request());
+            assertEquals(0, StatementCounter.stop());
+            assertEquals(304, revalidation.response().getStatus());
+            assertSame(history.getBody(), repeat.getBody());
+
+            long otherCar = dataVersions.carVersion(2L);
+            String fleetTag = dataVersions.fleetTag();
+            service.registerClaim(1L, LocalDate.parse("2024-06-01"), "Scratched while parked", new BigDecimal("75.00"));
+            assertEquals(otherCar, dataVersions.carVersion(2L));
+            assertNotEquals(fleetTag, dataVersions.fleetTag());
+
+            Exchange stale = webRequest(etag);
+            ResponseEntity<byte[]> changed = carController.getCarHistory(1L, null, null, null, stale.request());
+            assertNotEquals(etag, changed.getHeaders().getETag());
+            assertTrue(new String(changed.getBody(), StandardCharsets.UTF_8).contains("Scratched while parked"));
+
+            // the car lists follow the fleet version
+            Exchange page = webRequest(null);
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(page.servletRequest()));
+            try {
+                ResponseEntity<byte[]> cars = carController.getCarsPage(null, 1, page.request());
+                assertEquals(dataVersions.fleetTag(), cars.getHeaders().getETag());
+                assertNotNull(cars.getHeaders().getFirst("X-Next-Cursor"));
+
+                Exchange unchanged = webRequest(cars.getHeaders().getETag());
+                assertNull(carController.getCarsPage(null, 1, unchanged.request()));
+                assertEquals(304, unchanged.response().getStatus());
+
+                Owner owner = carRepository.findById(1L).orElseThrow().getOwner();
+                service.saveCar(new Car("ETAGFLEET01", "Seat", "Leon", 2021, owner));
+                assertNotNull(carController.getCarsPage(null, 1, webRequest(cars.getHeaders().getETag()).request()));
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            carController.getCars(webRequest(null).request()).getBody().writeTo(streamed);
+            ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+            StatementCounter.start();
+            carController.getCars(webRequest(null).request()).getBody().writeTo(replayed);
+            assertEquals(0, StatementCounter.stop());
+            assertArrayEquals(streamed.toByteArray(), replayed.toByteArray());
+            assertTrue(new String(replayed.toByteArray(), StandardCharsets.UTF_8).contains("ETAGFLEET01"));
+        } finally {
+            carRepository.findByVin("ETAGFLEET01").ifPresent(carRepository::delete);
+        }
+    }
+
+    private record Exchange(MockHttpServletRequest servletRequest, MockHttpServletResponse response) {
+        ServletWebRequest request() {
+            return new ServletWebRequest(servletRequest, response);
+        }
+    }
+
+    private static Exchange webRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cars");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new Exchange(request, new MockHttpServletResponse());
+    }
+
+    @Autowired
+    FleetEventStream eventStream;
+
+    @Test
+    void fleetEventStreamPushesFilteredEventsAndBoundsSlowSubscribers() throws Exception {
+        RecordingSink carOne = new RecordingSink(null);
+        FleetEventStream.Subscription carOneSubscription = eventStream.subscribe(
+                new FleetEventStream.Filter(Set.of(1L), null), null, FleetEventStream.Overflow.DROP, 100, carOne);
+        long before = eventStream.lastSeq();
+
+        InsuranceClaim claim = service.registerClaim(1L, LocalDate.parse("2024-06-01"), "Cracked windscreen",
+                new BigDecimal("90.00"));
+        eventStream.onEvents(new FleetEvent.Batch(List.of(new FleetEvent(FleetEvent.POLICY_EXPIRED, 2L, "Groupama", "x"))));
+        assertEquals("claim-created:1:Allianz:" + claim.getId(), carOne.next());
+
+        // resuming replays from the ring; the provider filter ignores case
+        RecordingSink allianz = new RecordingSink(null);
+        FleetEventStream.Subscription allianzSubscription = eventStream.subscribe(
+                new FleetEventStream.Filter(null, Set.of("ALLIANZ")), before, FleetEventStream.Overflow.DROP, 100, allianz);
+        assertEquals("claim-created:1:Allianz:" + claim.getId(), allianz.next());
+        RecordingSink everything = new RecordingSink(null);
+        FleetEventStream.Subscription everythingSubscription = eventStream.subscribe(
+                new FleetEventStream.Filter(null, null), before, FleetEventStream.Overflow.DROP, 100, everything);
+        assertEquals("claim-created:1:Allianz:" + claim.getId(), everything.next());
+        assertEquals("policy-expired:2:Groupama:null", everything.next());
+
+        LocalDate today = LocalDate.now();
+        InsurancePolicy expiring = policyRepository.save(new InsurancePolicy(carRepository.getReferenceById(2L),
+                "Omniasig", today.minusDays(20), today.minusDays(2)));
+        watermarkRepository.save(new SchedulerWatermark(ExpiredPolicyScheduler.WATERMARK, today.minusDays(3)));
+        expiredPolicyScheduler.logExpiredPolicies();
+        assertEquals("policy-expired:2:Omniasig:" + expiring.getId(), everything.next());
+        assertNull(carOne.poll());
+        assertNull(allianz.poll());
+        carOneSubscription.cancel();
+        allianzSubscription.cancel();
+        everythingSubscription.cancel();
+
+        // a stalled subscriber either skips ahead past a reported gap or is disconnected
+        for (FleetEventStream.Overflow overflow : FleetEventStream.Overflow.values()) {
+            CountDownLatch stalled = new CountDownLatch(1);
+            RecordingSink slow = new RecordingSink(stalled);
+            eventStream.subscribe(new FleetEventStream.Filter(null, null), null, overflow, 2, slow);
+            long first = eventStream.lastSeq() + 1;
+            FleetEvent.Batch batch = new FleetEvent.Batch(List.of(new FleetEvent(FleetEvent.CLAIM_CREATED, 3L, "Allianz", "x")));
+            eventStream.onEvents(batch);
+            assertEquals("claim-created:3:Allianz:null", slow.next());
+            for (int i = 0; i < 9; i++) {
+                eventStream.onEvents(batch);
+            }
+            stalled.countDown();
+            if (overflow == FleetEventStream.Overflow.DROP) {
+                assertEquals("gap:" + first + ":" + (first + 7), slow.next());
+                assertEquals("claim-created:3:Allianz:null", slow.next());
+                assertEquals("claim-created:3:Allianz:null", slow.next());
+                assertEquals(first + 9, slow.lastSeq);
+            } else {
+                assertEquals("close", slow.next());
+            }
+        }
+    }
+
+    @Autowired
+    PolicyAnalyticsService analyticsService;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    void policyAnalyticsCombinePartitionsIntoSingleThreadedFigures() {
+        Map<String, List<InsurancePolicy>> byProvider = new TreeMap<>();
+        Map<Long, List<InsurancePolicy>> byCar = new TreeMap<>();
+        for (InsurancePolicy policy : policyRepository.findAll()) {
+            if (policy.getStartDate() == null) continue;
+            byProvider.computeIfAbsent(policy.getProvider() != null ? policy.getProvider() : "Unknown",
+                    p -> new ArrayList<>()).add(policy);
+            byCar.computeIfAbsent(policy.getCar().getId(), c -> new ArrayList<>()).add(policy);
+        }
+        long overlapPairs = 0;
+        for (List<InsurancePolicy> policies : byCar.values()) {
+            for (int i = 0; i < policies.size(); i++) {
+                for (int j = i + 1; j < policies.size(); j++) {
+                    InsurancePolicy a = policies.get(i);
+                    InsurancePolicy b = policies.get(j);
+                    if (!a.getStartDate().isAfter(b.getEndDate()) && !b.getStartDate().isAfter(a.getEndDate())) {
+                        overlapPairs++;
+                    }
+                }
+            }
+        }
+
+        // one id per task: every car range is its own leaf, read on its own connection
+        PolicyAnalyticsService fineGrained = new PolicyAnalyticsService(carRepository, dataSource, meterRegistry,
+                4, 1, 100, 16);
+        try {
+            PolicyAnalyticsDto split = fineGrained.run();
+            PolicyAnalyticsDto whole = analyticsService.run();
+            assertEquals(1, whole.partitions());
+            assertTrue(split.partitions() > 1);
+            assertEquals(4, split.parallelism());
+
+            for (PolicyAnalyticsDto result : List.of(split, whole)) {
+                assertEquals(byCar.size(), result.cars());
+                assertEquals(byCar.values().stream().mapToInt(List::size).sum(), result.policies());
+                assertEquals(List.copyOf(byProvider.keySet()),
+                        result.providers().stream().map(PolicyAnalyticsDto.ProviderDuration::provider).toList());
+                for (PolicyAnalyticsDto.ProviderDuration provider : result.providers()) {
+                    List<InsurancePolicy> policies = byProvider.get(provider.provider());
+                    assertEquals(policies.size(), provider.policies());
+                    assertEquals(policies.stream().mapToLong(p -> p.getEndDate().toEpochDay() - p.getStartDate().toEpochDay() + 1)
+                            .average().orElseThrow(), provider.averageDays(), 1e-9);
+                }
+                assertEquals(overlapPairs, result.overlaps().pairs());
+            }
+            assertEquals(whole.overlaps(), split.overlaps());
+            assertEquals(whole.renewalGaps(), split.renewalGaps());
+            assertSame(whole, analyticsService.latestOrRun());
+        } finally {
+            fineGrained.close();
+        }
+    }
+
+    @Autowired
+    PolicyController policyController;
+
+    @Autowired
+    PolicyWriteService policyWriteService;
+
+    @Test
+    void policyWritesRejectOrFlagOverlapsAndDetectConcurrentWriters() throws Exception {
+        List<Long> written = new ArrayList<>();
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest("POST", "/api/cars/2/policies")));
+        try {
+            ResponseEntity<PolicyWriteResultDto> created = policyController.createPolicy(2L,
+                    new PolicyRequestDto("Allianz", "2061-01-01", "2061-12-31", null), "reject");
+            assertEquals(201, created.getStatusCode().value());
+            PolicyDto first = created.getBody().policy();
+            written.add(first.id());
+            assertEquals(0L, first.version());
+            assertTrue(created.getBody().conflicts().isEmpty());
+
+            // overlapping the end of the first: rejected with the conflict, nothing written
+            long policies = policyRepository.count();
+            ResponseEntity<PolicyWriteResultDto> rejected = policyController.createPolicy(2L,
+                    new PolicyRequestDto("Groupama", "2061-12-01", "2062-06-30", null), "reject");
+            assertEquals(409, rejected.getStatusCode().value());
+            assertNull(rejected.getBody().policy());
+            assertEquals(List.of(first.id()), rejected.getBody().conflicts().stream().map(PolicyDto::id).toList());
+            assertEquals(0L, rejected.getBody().conflicts().get(0).version());
+            assertEquals(policies, policyRepository.count());
+
+            // flagged: written, with the conflict reported
+            ResponseEntity<PolicyWriteResultDto> flagged = policyController.createPolicy(2L,
+                    new PolicyRequestDto("Groupama", "2061-12-01", "2062-06-30", null), "flag");
+            assertEquals(201, flagged.getStatusCode().value());
+            written.add(flagged.getBody().policy().id());
+            assertEquals(List.of(first.id()), flagged.getBody().conflicts().stream().map(PolicyDto::id).toList());
+
+            // shortening the first clears the overlap; the stale version is refused afterwards
+            ResponseEntity<PolicyWriteResultDto> updated = policyController.updatePolicy(2L, first.id(),
+                    new PolicyRequestDto("Allianz", "2061-01-01", "2061-11-30", 0L), "reject");
+            assertEquals(200, updated.getStatusCode().value());
+            assertEquals(1L, updated.getBody().policy().version());
+            assertTrue(updated.getBody().conflicts().isEmpty());
+            assertEquals(updated.getBody().policy(), policyController.getPolicy(2L, first.id()));
+            assertEquals(404, assertThrows(ResponseStatusException.class,
+                    () -> policyController.getPolicy(1L, first.id())).getStatusCode().value());
+            ResponseStatusException stale = assertThrows(ResponseStatusException.class, () ->
+                    policyController.updatePolicy(2L, first.id(),
+                            new PolicyRequestDto("Allianz", "2061-01-01", "2061-10-31", 0L), "reject"));
+            assertEquals(409, stale.getStatusCode().value());
+
+            // another node adds a policy and bumps the car's version: the cached tree is rebuilt and sees it
+            jdbcTemplate.update("insert into insurancepolicy (car_id, provider, start_date, end_date) " +
+                    "values (2, 'Uniqa', date '2063-01-01', date '2063-12-31')");
+            jdbcTemplate.update("update car set policies_version = policies_version + 1 where id = 2");
+            Long remote = jdbcTemplate.queryForObject(
+                    "select id from insurancepolicy where car_id = 2 and start_date = date '2063-01-01'", Long.class);
+            ResponseEntity<PolicyWriteResultDto> behind = policyController.createPolicy(2L,
+                    new PolicyRequestDto("Allianz", "2063-06-01", "2063-06-30", null), "reject");
+            assertEquals(409, behind.getStatusCode().value());
+            assertEquals(List.of(remote), behind.getBody().conflicts().stream().map(PolicyDto::id).toList());
+            jdbcTemplate.update("delete from insurancepolicy where id = ?", remote);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        // concurrent writers of the same period: the lock stripe lets exactly one through
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PolicyWriteService.WriteResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(writers.submit(() -> policyWriteService.create(2L, "Generali",
+                        LocalDate.parse("2065-01-01"), LocalDate.parse("2065-12-31"),
+                        PolicyWriteService.OnConflict.REJECT)));
+            }
+            int accepted = 0;
+            for (Future<PolicyWriteService.WriteResult> result : results) {
+                InsurancePolicy policy = result.get(10, TimeUnit.SECONDS).policy();
+                if (policy != null) {
+                    accepted++;
+                    written.add(policy.getId());
+                }
+            }
+            assertEquals(1, accepted);
+        } finally {
+            writers.shutdown();
+            policyRepository.deleteAllById(written);
+        }
+    }
+
+    @Autowired
+    OwnerRepository ownerRepository;
+
+    @Autowired
+    OwnerPortfolioService portfolioService;
+
+    @Autowired
+    OwnerController ownerController;
+
+    @Test
+    void ownerPortfolioPagesCarsWithAFixedNumberOfQueries() {
+        String ownerPlan = jdbcTemplate.queryForObject("explain select id from car " +
+                "where owner_id = 1 and id > 0 order by owner_id, id", String.class);
+        assertTrue(ownerPlan.contains("IX_CAR_OWNER") && ownerPlan.contains("index sorted"), ownerPlan);
+
+        Owner owner = ownerRepository.save(new Owner("Fleet Co", "fleet@example.com"));
+        List<Car> cars = new ArrayList<>();
+        List<InsurancePolicy> policies = new ArrayList<>();
+        List<InsuranceClaim> claims = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                Car car = carRepository.save(new Car("PORTFOLIO0" + i, "Dacia", "Duster", 2022, owner));
+                cars.add(car);
+                policies.add(policyRepository.save(new InsurancePolicy(car, "Allianz",
+                        LocalDate.parse("2025-01-01"), LocalDate.parse("2025-12-31"))));
+                policies.add(policyRepository.save(new InsurancePolicy(car, "Groupama",
+                        LocalDate.parse("2024-01-01"), LocalDate.parse("2024-12-31"))));
+                for (int c = 0; c < i; c++) {
+                    claims.add(claimRepository.save(new InsuranceClaim(car, LocalDate.parse("2025-02-0" + (c + 1)),
+                            "Portfolio test claim " + c, new BigDecimal("100.00"))));
+                }
+            }
+            claims.add(claimRepository.save(new InsuranceClaim(cars.get(4), LocalDate.parse("2024-06-01"),
+                    "Claim before the window", new BigDecimal("50.00"))));
+            LocalDate activeOn = LocalDate.parse("2025-06-01");
+            LocalDate since = LocalDate.parse("2025-01-01");
+            portfolioService.getPortfolio(owner.getId(), 0, 1, activeOn, since);
+
+            // a page of one car and a page of five cost the same statements
+            StatementCounter.start();
+            OwnerPortfolioService.Page one = portfolioService.getPortfolio(owner.getId(), 0, 1, activeOn, since);
+            int statementsForOne = StatementCounter.stop();
+            StatementCounter.start();
+            OwnerPortfolioService.Page all = portfolioService.getPortfolio(owner.getId(), 0, 5, activeOn, since);
+            int statementsForAll = StatementCounter.stop();
+            assertEquals(statementsForOne, statementsForAll);
+            assertTrue(statementsForAll <= 4, "statements: " + statementsForAll);
+
+            assertEquals(cars.get(0).getId(), one.lastCarId());
+            assertNull(all.lastCarId());
+            OwnerPortfolioDto portfolio = all.portfolio();
+            assertEquals("Fleet Co", portfolio.name());
+            assertEquals(cars.stream().map(Car::getId).toList(),
+                    portfolio.cars().stream().map(OwnerPortfolioDto.PortfolioCar::id).toList());
+            for (int i = 0; i < 5; i++) {
+                OwnerPortfolioDto.PortfolioCar car = portfolio.cars().get(i);
+                assertEquals(List.of("Allianz"),
+                        car.activePolicies().stream().map(OwnerPortfolioDto.ActivePolicy::provider).toList());
+                assertEquals(i, car.recentClaims().size());
+                if (i > 1) {
+                    assertTrue(car.recentClaims().get(0).claimDate().isAfter(car.recentClaims().get(1).claimDate()));
+                }
+            }
+
+            // the controller links the next page until the last one
+            List<Long> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                        "/api/owners/" + owner.getId() + "/portfolio");
+                RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+                try {
+                    ResponseEntity<OwnerPortfolioDto> page = ownerController.getPortfolio(owner.getId(), cursor, 2,
+                            "2025-06-01", "2025-01-01");
+                    page.getBody().cars().forEach(car -> paged.add(car.id()));
+                    cursor = page.getHeaders().getFirst("X-Next-Cursor");
+                } finally {
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            } while (cursor != null);
+            assertEquals(cars.stream().map(Car::getId).toList(), paged);
+
+            ResponseStatusException missing = assertThrows(ResponseStatusException.class,
+                    () -> ownerController.getPortfolio(Long.MAX_VALUE, null, null, null, null));
+            assertEquals(404, missing.getStatusCode().value());
+        } finally {
+            claimRepository.deleteAll(claims);
+            policyRepository.deleteAll(policies);
+            carRepository.deleteAll(cars);
+            ownerRepository.delete(owner);
+        }
+    }
+
+    @Test
+    void replicaRoutingSendsReadOnlyTransactionsToTheReplicaUnlessTheRequestWrote() {
+        // two H2 instances holding one row each, so every read shows which one served it
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1", "sa", "");
+        DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(primary).execute("create table node (name varchar(16)); insert into node values ('primary')");
+        new JdbcTemplate(replica).execute("create table node (name varchar(16)); insert into node values ('replica')");
+        try {
+            for (boolean readYourWrites : new boolean[]{true, false}) {
+                DataSource routing = new LazyConnectionDataSourceProxy(
+                        new ReplicaRoutingDataSource(primary, replica, readYourWrites));
+                JdbcTemplate jdbc = new JdbcTemplate(routing);
+                TransactionTemplate writes = new TransactionTemplate(new DataSourceTransactionManager(routing));
+                TransactionTemplate reads = new TransactionTemplate(new DataSourceTransactionManager(routing));
+                reads.setReadOnly(true);
+                Supplier<String> node = () -> jdbc.queryForObject("select min(name) from node", String.class);
+
+                // outside a request first: the test framework binds a mock one to the thread
+                RequestContextHolder.resetRequestAttributes();
+                assertEquals("replica", reads.execute(status -> node.get()));
+                assertEquals("primary", writes.execute(status -> node.get()));
+                assertEquals("primary", node.get());
+                try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+                    assertEquals("primary", reads.execute(status -> node.get()));
+                }
+                assertEquals("replica", reads.execute(status -> node.get()));
+
+                RequestContextHolder.setRequestAttributes(
+                        new ServletRequestAttributes(new MockHttpServletRequest("POST", "/api/cars/1/claims")));
+                try {
+                    // a rolled back write leaves the request on the replica, a committed one moves it if configured
+                    writes.executeWithoutResult(status -> {
+                        jdbc.update("insert into node values ('rolled back')");
+                        status.setRollbackOnly();
+                    });
+                    assertEquals("replica", reads.execute(status -> node.get()));
+                    writes.executeWithoutResult(status -> jdbc.update("insert into node values ('written')"));
+                    assertEquals(readYourWrites ? "primary" : "replica", reads.execute(status -> node.get()));
+                } finally {
+                    RequestContextHolder.resetRequestAttributes();
+                }
+                assertEquals("replica", reads.execute(status -> node.get()));
+                jdbc.update("delete from node where name = 'written'");
+            }
+        } finally {
+            new JdbcTemplate(primary).execute("drop table node");
+            new JdbcTemplate(replica).execute("drop table node");
+        }
+    }
+
+    // the replica profile's stand-in replica, which never sees a write after startup, and no policy index, so
+    // validity checks reach the cacheable existsActiveOnDate query
+    @Nested
+    @ActiveProfiles("replica")
+    @TestPropertySource(properties = {
+            "spring.datasource.url=jdbc:h2:mem:cache-primary;DB_CLOSE_DELAY=-1",
+            "carins.datasource.replica.url=jdbc:h2:mem:cache-replica;DB_CLOSE_DELAY=-1",
+            "carins.policy-index.enabled=false"})
+    class WithStandInReplica {
+
+        @Autowired
+        CarService carService;
+
+        @Autowired
+        PolicyWriteService policyWriteService;
+
+        @Autowired
+        InsurancePolicyRepository policyRepository;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Test
+        void replicaReadsDoNotFillTheSharedCaches() {
+            RequestContextHolder.resetRequestAttributes();
+            LocalDate february = LocalDate.of(2025, 2, 1);
+            assertFalse(carService.isInsuranceValid(2L, february));
+
+            policyWriteService.create(2L, "Uniqa", LocalDate.of(2025, 1, 15), LocalDate.of(2025, 2, 15),
+                    PolicyWriteService.OnConflict.FLAG);
+            // the replica still answers from before the write, and that answer must not be cached for everyone
+            assertFalse(carService.isInsuranceValid(2L, february));
+            try (ReplicaRoutingDataSource.PrimaryPin pin = ReplicaRoutingDataSource.pinToPrimary()) {
+                assertTrue(carService.isInsuranceValid(2L, february));
+            }
+
+            policyWriteService.update(2L, 3L, 0L, "Generali", LocalDate.of(2025, 3, 1), LocalDate.of(2025, 9, 6),
+                    PolicyWriteService.OnConflict.FLAG);
+            // nor may the old row, reloaded from the replica after an eviction
+            entityManagerFactory.getCache().evict(InsurancePolicy.class);
+            assertEquals("Allianz", policyRepository.findById(3L).orElseThrow().getProvider());
+            InsurancePolicy fromPrimary = policyWriteService.get(2L, 3L);
+            assertEquals("Generali", fromPrimary.getProvider());
+            assertEquals(1L, fromPrimary.getVersion());
+        }
+    }
+
+    // records deliveries; the first event blocks until 'stall' opens, standing in for a slow client
+    private static final class RecordingSink implements FleetEventStream.Sink {
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        private final CountDownLatch stall;
+        private volatile long lastSeq;
+
+        RecordingSink(CountDownLatch stall) {
+            this.stall = stall;
+        }
+
+        @Override
+        public void event(long seq, FleetEvent event) {
+            Object id = event.data() instanceof ClaimCreatedEventDto c ? c.claimId()
+                    : event.data() instanceof PolicyExpiredEventDto p ? p.policyId() : null;
+            received.add(event.type() + ":" + event.carId() + ":" + event.provider() + ":" + id);
+            lastSeq = seq;
+            if (stall != null) {
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void gap(long after, long upTo) {
+            received.add("gap:" + after + ":" + upTo);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            received.add("close");
+        }
+
+        String next() throws InterruptedException {
+            String next = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(next, "no event within 5 seconds");
+            return next;
+        }
+
+        String poll() {
+            return received.poll();
+        }
+    }
+}